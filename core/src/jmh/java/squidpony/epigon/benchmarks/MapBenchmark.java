@@ -0,0 +1,124 @@
+package squidpony.epigon.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import squidpony.ArrayTools;
+import squidpony.epigon.data.control.DataPool;
+import squidpony.epigon.mapping.EpiMap;
+import squidpony.epigon.mapping.LocalAreaGenerator;
+import squidpony.epigon.mapping.MapDecorator;
+import squidpony.squidgrid.FOV;
+import squidpony.squidgrid.Radius;
+import squidpony.squidgrid.mapping.LineKit;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.squidmath.StatefulRNG;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for building levels and for the work done on a level every turn: lighting and field of view the same way
+ * {@code Epigon.calcFOV} does it, and getting the symbols of the map. Nothing here needs a GL context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    /**
+     * The same size as the map panel in the game, which decides how much of the level is lit each turn.
+     */
+    private static final int gridWidth = 102, gridHeight = 26;
+
+    @Param({"160"})
+    public int size;
+
+    @Param({"4"})
+    public int depth;
+
+    private MapDecorator decorator;
+    private EpiMap map;
+    private Coord viewer;
+    private char[][] lineDungeon, prunedDungeon;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        decorator = new MapDecorator(DataPool.instance().dataStarter);
+        map = new LocalAreaGenerator(decorator).buildWorld(size, size, depth)[0];
+        char[][] simple = map.simpleChars();
+        viewer = new GreasedRegion(simple, '.').singleRandom(new StatefulRNG(size));
+        if (viewer.x < 0) { // no floor at all
+            viewer = Coord.get(size >>> 1, size >>> 1);
+        }
+        lineDungeon = map.line;
+        prunedDungeon = ArrayTools.copy(lineDungeon);
+        map.updateIndex();
+    }
+
+    /**
+     * Builds a whole world from scratch, using every core.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public EpiMap[] buildWorld() {
+        return new LocalAreaGenerator(decorator).buildWorld(size, size, depth);
+    }
+
+    /**
+     * Lights the area around the viewer and finds what can be seen, as happens every turn.
+     */
+    @Benchmark
+    public char[][] calcFOV() {
+        int x = viewer.x, y = viewer.y;
+        map.invalidate(viewer);
+        map.updateIndex();
+        map.lighting.calculateFOV(x, y,
+            x - 1 - (gridWidth >>> 1), y - 1 - (gridHeight >>> 1),
+            x + 1 + (gridWidth >>> 1), y + 1 + (gridHeight >>> 1));
+        FOV.addFOVsInto(map.lighting.fovResult, FOV.reuseFOV(map.lighting.resistances, map.lighting.tempFOV,
+            x, y, 4.0, Radius.CIRCLE));
+        map.seen.or(map.tempSeen.refill(map.lighting.fovResult, 0.0001, Double.POSITIVE_INFINITY));
+        return LineKit.pruneLines(lineDungeon, map.seen, LineKit.lightAlt, prunedDungeon);
+    }
+
+    /**
+     * Gets the symbols of a map where nothing changed since the last call.
+     */
+    @Benchmark
+    public char[][] simpleChars() {
+        return map.simpleChars();
+    }
+
+    /**
+     * Gets the symbols of a map where every cell changed since the last call, as when a level is first shown.
+     */
+    @Benchmark
+    public char[][] simpleCharsAllChanged() {
+        map.invalidateAll();
+        return map.simpleChars();
+    }
+
+    private long time;
+
+    /**
+     * Gets the background color of every cell in a map panel's area around the viewer, one frame later each call, as
+     * Crawl does for visible cells every frame.
+     */
+    @Benchmark
+    public float terrainBackgrounds() {
+        long t = time += 16L;
+        float sum = 0f;
+        int startX = Math.max(0, viewer.x - (gridWidth >>> 1)), startY = Math.max(0, viewer.y - (gridHeight >>> 1)),
+            endX = Math.min(size, startX + gridWidth), endY = Math.min(size, startY + gridHeight);
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                sum += map.contents[x][y].getBackgroundColor(x, y, t);
+            }
+        }
+        return sum;
+    }
+}
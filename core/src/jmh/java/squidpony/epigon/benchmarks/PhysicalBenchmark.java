@@ -0,0 +1,132 @@
+package squidpony.epigon.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import squidpony.epigon.combat.ActionOutcome;
+import squidpony.epigon.data.ChangeTable;
+import squidpony.epigon.data.Condition;
+import squidpony.epigon.data.LiveValue;
+import squidpony.epigon.data.Physical;
+import squidpony.epigon.data.StatChanges;
+import squidpony.epigon.data.StatStore;
+import squidpony.epigon.data.Weapon;
+import squidpony.epigon.data.control.DataPool;
+import squidpony.epigon.data.control.DataStarter;
+import squidpony.epigon.data.control.RecipeMixer;
+import squidpony.epigon.data.raw.RawCreature;
+import squidpony.squidmath.Coord;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for making things and for the stat changes done during every attack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicalBenchmark {
+
+    private DataStarter dataStarter;
+    private Physical actor, target;
+    private Weapon weapon;
+    private ChangeTable changes;
+    private final StatChanges statChanges = new StatChanges();
+    private StatStore store;
+    private double[] targetActual, targetDelta;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataStarter = DataPool.instance().dataStarter;
+        weapon = Weapon.getWeapons().getAt(0);
+        changes = weapon.calcStats;
+        store = new StatStore();
+        for (int i = 0; i < 200; i++) {
+            store.attach(RecipeMixer.buildCreature(RawCreature.ENTRIES[i % RawCreature.ENTRIES.length]));
+        }
+    }
+
+    /**
+     * Both sides are made again before every iteration, and the target's stats are kept so {@link #attack()} can put
+     * them back after each attack.
+     */
+    @Setup(Level.Iteration)
+    public void makeCreatures() {
+        actor = RecipeMixer.buildCreature(RawCreature.ENTRIES[0]);
+        actor.location = Coord.get(1, 1);
+        target = RecipeMixer.buildCreature(RawCreature.ENTRIES[1]);
+        target.location = Coord.get(2, 1);
+        int statCount = target.stats.size();
+        targetActual = new double[statCount];
+        targetDelta = new double[statCount];
+        for (int i = 0; i < statCount; i++) {
+            targetActual[i] = target.stats.getAt(i).actual();
+            targetDelta[i] = target.stats.getAt(i).delta();
+        }
+    }
+
+    @Benchmark
+    public Physical buildPhysicalDoor() {
+        return RecipeMixer.buildPhysical(dataStarter.doorBlueprint);
+    }
+
+    @Benchmark
+    public Physical buildPhysicalPlayer() {
+        return RecipeMixer.buildPhysical(dataStarter.playerBlueprint);
+    }
+
+    @Benchmark
+    public Physical buildCreature() {
+        return RecipeMixer.buildCreature(RawCreature.ENTRIES[0]);
+    }
+
+    /**
+     * Applies and then takes back a weapon's stat changes, as each side of an attack does.
+     */
+    @Benchmark
+    public Physical holdAndReleasePhysical() {
+        ChangeTable.holdPhysical(actor, changes);
+        return ChangeTable.releasePhysical(actor, changes);
+    }
+
+    /**
+     * Moves every stat along by a turn, as happens to the player every turn; this shouldn't allocate.
+     */
+    @Benchmark
+    public StatChanges tickStats() {
+        statChanges.clear();
+        actor.tickStats(statChanges);
+        return statChanges;
+    }
+
+    /**
+     * Moves every stat of 200 creatures along by a turn, as happens on a level every turn.
+     */
+    @Benchmark
+    public StatStore tickStore() {
+        store.tick();
+        return store;
+    }
+
+    /**
+     * Makes one attack, then wears off any condition it gave and puts the target's stats back, the same way
+     * {@link squidpony.epigon.combat.CombatSimulator} does, so every attack is against the same target.
+     */
+    @Benchmark
+    public ActionOutcome attack() {
+        ActionOutcome ao = ActionOutcome.attack(actor, weapon, target);
+        if (ao.targetConditioned) {
+            for (Condition c : target.conditions) {
+                c.wearOff();
+            }
+            target.conditions.clear();
+        }
+        for (int i = 0; i < targetActual.length; i++) {
+            LiveValue lv = target.stats.getAt(i);
+            lv.actual(targetActual[i]);
+            lv.delta(targetDelta[i]);
+        }
+        return ao;
+    }
+}
@@ -143,32 +143,19 @@ public class ActionOutcome {
             {
                 ao.targetWeapon = Weapon.randomUnarmedWeapon(target);
             }
-            actor.statEffects.add(w.calcStats);
-            target.statEffects.add(ao.targetWeapon.calcStats);
-            ChangeTable.holdPhysical(actor, actor.statEffects);
-            //System.out.println("Attacker is " + actor.name + " with base stats " + actor.stats + " and adjusted stats: " + tempActorStats);
-            ChangeTable.holdPhysical(target, target.statEffects);
-            //System.out.println("Defender is " + target.name  + " with base stats " + target.stats + " and adjusted stats: " + tempTargetStats);
+            final ChangeTable actorWeapon = w.calcStats, targetWeapon = ao.targetWeapon.calcStats;
 
-            ao.crit = (15 + 3 * (actor.actualStat(CalcStat.CRIT) - target.actualStat(CalcStat.STEALTH))) >= actor.nextInt(90);
-            double actorPrecision = actor.actualStat(CalcStat.PRECISION) + actorSkill,
-                    targetEvasion = target.actualStat(CalcStat.EVASION) + targetSkill;
+            ao.crit = (15 + 3 * (actor.heldStat(CalcStat.CRIT, actorWeapon) - target.heldStat(CalcStat.STEALTH, targetWeapon))) >= actor.nextInt(90);
+            double actorPrecision = actor.heldStat(CalcStat.PRECISION, actorWeapon) + actorSkill,
+                    targetEvasion = target.heldStat(CalcStat.EVASION, targetWeapon) + targetSkill;
             ao.hit = (67 + 5 * ((ao.crit ? 10 : 0) + actorPrecision - targetEvasion)) >= actor.next(7);
             if (ao.hit) {
                 ao.attemptedDamage = Math.min(0, Noise.fastFloor((NumberTools.formCurvedFloat(actor.nextLong()) * 0.4f - 0.5f) * ((ao.crit ? 12 : 1) +
-                        actor.actualStat(CalcStat.DAMAGE) + actorSkill)));
+                        actor.heldStat(CalcStat.DAMAGE, actorWeapon) + actorSkill)));
                 ao.actualDamage = Math.min(0, ao.attemptedDamage -
-                        Noise.fastFloor((NumberTools.formCurvedFloat(actor.nextLong()) * 0.3f + 0.35f) * (target.actualStat(CalcStat.DEFENSE) + targetSkill)));
-                ao.targetConditioned = (35 + 5 * ((ao.crit ? 9 : 0) + actor.actualStat(CalcStat.INFLUENCE) + actorSkill -
-                        target.actualStat(CalcStat.LUCK) - targetSkill)) >= actor.next(8);
-            }
-            ChangeTable.releasePhysical(actor, actor.statEffects);
-            ChangeTable.releasePhysical(target, target.statEffects);
-            if (!target.statEffects.isEmpty()) {
-                actor.statEffects.removeLast();
-            }
-            if (!target.statEffects.isEmpty()) {
-                target.statEffects.removeLast();
+                        Noise.fastFloor((NumberTools.formCurvedFloat(actor.nextLong()) * 0.3f + 0.35f) * (target.heldStat(CalcStat.DEFENSE, targetWeapon) + targetSkill)));
+                ao.targetConditioned = (35 + 5 * ((ao.crit ? 9 : 0) + actor.heldStat(CalcStat.INFLUENCE, actorWeapon) + actorSkill -
+                        target.heldStat(CalcStat.LUCK, targetWeapon) - targetSkill)) >= actor.next(8);
             }
             if (ao.targetConditioned) {
                 Condition c = new Condition(ConditionBlueprint.CONDITIONS.getOrDefault(ao.targetCondition, ConditionBlueprint.CONDITIONS.getAt(0)), target, ao.element); //CONDITIONS.randomValue(actor)
@@ -0,0 +1,183 @@
+package squidpony.epigon.combat;
+
+import squidpony.epigon.data.*;
+import squidpony.epigon.data.control.RecipeMixer;
+import squidpony.epigon.data.raw.RawCreature;
+import squidpony.squidmath.Coord;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs many attacks with {@link ActionOutcome#attack(Physical, Weapon, Physical)} between every pair of creatures in
+ * {@link RawCreature#ENTRIES}, with the attacker using each weapon in {@link Weapon#weapons} in turn, and counts how
+ * often they hit, crit, condition or would kill. Meant for balancing, without any map or display.
+ * <br>
+ * Every pair of creatures is run as its own piece of work in parallel, with its own copies of both creatures, so
+ * nothing that changes during an attack is shared between threads. Each attack is against the defender as it was
+ * first built, and each attacker's weapon gets its own {@link RandomContext} split from the seed, so the counts don't
+ * depend on how many threads run or what order the pairs finish in. Results are kept in columns,
+ * one primitive array per count, indexed by {@link #row(int, int, int)}.
+ */
+public class CombatSimulator {
+
+    public final RawCreature[] creatures;
+    public final Weapon[] weapons;
+    /**
+     * How many attacks are made for each attacker, weapon and defender.
+     */
+    public final int attacks;
+    public final int[] hits, crits, kills, conditioned;
+    /**
+     * The total damage dealt, as a positive number.
+     */
+    public final long[] damage;
+
+    public CombatSimulator(int attacks) {
+        this.attacks = attacks;
+        creatures = RawCreature.ENTRIES;
+        weapons = Weapon.getWeapons().values().toArray(new Weapon[0]);
+        int rows = creatures.length * weapons.length * creatures.length;
+        hits = new int[rows];
+        crits = new int[rows];
+        kills = new int[rows];
+        conditioned = new int[rows];
+        damage = new long[rows];
+    }
+
+    /**
+     * Where the counts for the given attacker, weapon and defender go in each column.
+     */
+    public int row(int attacker, int weapon, int defender) {
+        return (attacker * weapons.length + weapon) * creatures.length + defender;
+    }
+
+    /**
+     * Runs every attack on the common ForkJoinPool.
+     */
+    public CombatSimulator run(long seed) {
+        return run(ForkJoinPool.commonPool(), seed);
+    }
+
+    /**
+     * Runs every attack, with pairs of creatures run in parallel on the given pool, replacing any earlier counts.
+     *
+     * @return this, for chaining
+     */
+    public CombatSimulator run(ForkJoinPool pool, long seed) {
+        final int count = creatures.length;
+        final RandomContext root = new RandomContext(seed);
+        // creatures are built in order on this thread, since building them takes from shared data
+        final Physical[] actors = new Physical[count * count], targets = new Physical[count * count];
+        int[] block = EpiData.suspendIdBlock();
+        int ids = EpiData.reserveIdBlocks(actors.length);
+        try {
+            for (int i = 0; i < actors.length; i++) {
+                EpiData.useIdBlock(ids, i);
+                actors[i] = RecipeMixer.buildCreature(creatures[i / count]);
+                actors[i].location = Coord.get(0, 0);
+                targets[i] = RecipeMixer.buildCreature(creatures[i % count]);
+                targets[i].location = Coord.get(1, 0);
+            }
+        } finally {
+            EpiData.useSharedIds();
+            EpiData.resumeIdBlock(block);
+        }
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[actors.length];
+        for (int i = 0; i < tasks.length; i++) {
+            final int pair = i;
+            tasks[i] = pool.submit(() -> runPair(actors[pair], pair / count, targets[pair], pair % count, root));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return this;
+    }
+
+    /**
+     * Writes one line per attacker, weapon and defender, after a header line, with the rates of each count per attack
+     * and the average damage per attack.
+     */
+    public void writeCSV(Appendable out) throws IOException {
+        out.append("attacker,weapon,defender,attacks,hit rate,crit rate,average damage,kill rate,condition rate\n");
+        final double per = 1.0 / Math.max(1, attacks);
+        for (int a = 0; a < creatures.length; a++) {
+            for (int w = 0; w < weapons.length; w++) {
+                for (int d = 0; d < creatures.length; d++) {
+                    int r = row(a, w, d);
+                    out.append(creatures[a].name).append(',').append(weapons[w].rawWeapon.name).append(',')
+                        .append(creatures[d].name).append(',').append(Integer.toString(attacks)).append(',');
+                    appendRate(out, hits[r] * per).append(',');
+                    appendRate(out, crits[r] * per).append(',');
+                    appendRate(out, damage[r] * per).append(',');
+                    appendRate(out, kills[r] * per).append(',');
+                    appendRate(out, conditioned[r] * per).append('\n');
+                }
+            }
+        }
+    }
+
+    private void runPair(Physical actor, int attacker, Physical target, int defender, RandomContext root) {
+        final int statCount = target.stats.size();
+        final double[] actual = new double[statCount], delta = new double[statCount];
+        for (int i = 0; i < statCount; i++) {
+            actual[i] = target.stats.getAt(i).actual();
+            delta[i] = target.stats.getAt(i).delta();
+        }
+        final LiveValue vigor = target.stats.get(Stat.VIGOR);
+        final double health = vigor == null ? 0.0 : vigor.actual();
+        final Weapon wielded = target.creatureData.lastWieldedWeapon;
+        final Physical used = target.creatureData.lastUsedItem;
+        for (int w = 0; w < weapons.length; w++) {
+            final int r = row(attacker, w, defender);
+            int hit = 0, crit = 0, kill = 0, cond = 0;
+            long dealt = 0L;
+            RandomContext previous = EpiData.useRandomContext(root.split(r));
+            try {
+                for (int n = 0; n < attacks; n++) {
+                    ActionOutcome ao = ActionOutcome.attack(actor, weapons[w], target);
+                    if (ao.crit) {
+                        crit++;
+                    }
+                    if (ao.hit) {
+                        hit++;
+                        dealt -= ao.actualDamage;
+                        if (-ao.actualDamage >= health) {
+                            kill++;
+                        }
+                    }
+                    if (ao.targetConditioned) {
+                        cond++;
+                        for (Condition c : target.conditions) {
+                            c.wearOff();
+                        }
+                        target.conditions.clear();
+                    }
+                    for (int i = 0; i < statCount; i++) {
+                        LiveValue lv = target.stats.getAt(i);
+                        lv.actual(actual[i]);
+                        lv.delta(delta[i]);
+                    }
+                    target.creatureData.lastWieldedWeapon = wielded;
+                    target.creatureData.lastUsedItem = used;
+                }
+            } finally {
+                // a worker thread that kept the context would keep every EpiData on it away from its own state
+                EpiData.useRandomContext(previous);
+            }
+            hits[r] = hit;
+            crits[r] = crit;
+            kills[r] = kill;
+            conditioned[r] = cond;
+            damage[r] = dealt;
+        }
+    }
+
+    private static Appendable appendRate(Appendable out, double rate) throws IOException {
+        long scaled = Math.round(rate * 10000.0);
+        out.append(Long.toString(scaled / 10000L)).append('.');
+        String fraction = Long.toString(scaled % 10000L + 10000L);
+        return out.append(fraction, 1, 5);
+    }
+}
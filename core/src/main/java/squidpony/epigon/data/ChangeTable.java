@@ -5,8 +5,10 @@ import squidpony.epigon.util.ConstantKey;
 import squidpony.squidmath.Arrangement;
 import squidpony.squidmath.IntVLA;
 import squidpony.squidmath.OrderedMap;
+import squidpony.squidmath.OrderedSet;
 
 import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -16,6 +18,61 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public Arrangement<ConstantKey> indexer;
     public FloatArray values;
     public IntVLA changeSymbols, unrelatedSymbols;
+
+    // compiled operations, one per change
+    private static final byte NONE = 0, SET = 1, ADD = 2, SUBTRACT = 3, MULTIPLY = 4, SET_DELTA = 5, LESSEN = 6, RAISE = 7;
+
+    /**
+     * The changes in a form that can be applied without hashing, built when first needed and dropped by
+     * {@link #put(ConstantKey, int, double)} or {@link #clear()}. Everything in it is built before it is set here, so a
+     * thread that sees it sees all of it.
+     */
+    private transient volatile Compiled compiled;
+
+    /**
+     * For each stat index from {@link StatChanges#index(ConstantKey)}, slots has which change applies to that stat, or
+     * -1; then each change has its operation for non-destructive use, its operation for destructive use, and its amount.
+     * Never changed once built; changing the table builds a new one.
+     */
+    private static final class Compiled {
+        final ChangeTable table;
+        final int[] slots;
+        final byte[] holdOps, strikeOps;
+        final double[] amounts;
+
+        Compiled(ChangeTable table) {
+            this.table = table;
+            int n = table.values.size;
+            slots = new int[StatChanges.COUNT];
+            Arrays.fill(slots, -1);
+            holdOps = new byte[n];
+            strikeOps = new byte[n];
+            amounts = new double[n];
+            for (int i = 0; i < n; i++) {
+                int slot = StatChanges.index(table.indexer.keyAt(i));
+                if (slot >= 0)
+                    slots[slot] = i;
+                int symbol = table.changeSymbols.get(i);
+                if (symbol < 0)
+                    strikeOps[i] = opcode(~symbol);
+                else
+                    holdOps[i] = opcode(symbol);
+                amounts[i] = table.values.get(i);
+            }
+        }
+
+        /**
+         * Finds which change applies to the given stat, or -1 if none do.
+         */
+        int find(ConstantKey key) {
+            return find(StatChanges.index(key), key);
+        }
+
+        int find(int slot, ConstantKey key) {
+            return slot >= 0 ? slots[slot] : table.indexer.getInt(key); // only keys that aren't stats need hashing
+        }
+    }
+
     public ChangeTable()
     {
         this(12);
@@ -45,6 +102,7 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
      * @return true if the triplet was added normally, or false if it overwrote an existing triplet
      */
     public boolean put(ConstantKey key, int symbol, double value) {
+        compiled = null;
         if(key == null)
         {
             unrelatedSymbols.add(symbol);
@@ -65,8 +123,41 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
 
     }
 
+    /**
+     * Gets the compiled form of this table, building it if it isn't already built. Two threads may both build it the
+     * first time, but they build the same thing.
+     */
+    private Compiled compile() {
+        Compiled c = compiled;
+        if (c == null)
+            compiled = c = new Compiled(this);
+        return c;
+    }
+
+    private static byte opcode(int symbol) {
+        switch (symbol) {
+            case '=':
+                return SET;
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case '*':
+                return MULTIPLY;
+            case ':':
+                return SET_DELTA;
+            case '<':
+                return LESSEN;
+            case '>':
+                return RAISE;
+            default:
+                return NONE;
+        }
+    }
+
     @Override
     public void clear() {
+        compiled = null;
         indexer.clear();
         values.clear();
         changeSymbols.clear();
@@ -392,63 +483,16 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical strikePhysical(Physical physical, ChangeTable ct)
     {
         if(ct == null) return physical;
+        Compiled c = ct.compile();
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
-        LiveValue e;
         int index;
-        double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
-            e = changing.getAt(i);
-            v = e.actual();
-            if ((index = ct.indexer.getInt(k)) < 0)
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            if ((index = c.find(changing.keyAt(i))) < 0)
                 continue;
-            op = ct.changeSymbols.get(index);
-            switch (op) {
-                case ~'=':
-                    v = ct.values.get(index);
-                    break;
-                case ~'+':
-                    v += ct.values.get(index);
-                    break;
-                case ~'-':
-                    v -= ct.values.get(index);
-                    break;
-                case ~'*':
-                    v *= ct.values.get(index);
-                    break;
-                    // be careful of these delta-related effects in strikes; they must be reversed with another ChangeTable, if at all
-                // set delta
-                case ~':':
-                    e.delta(ct.values.get(index));
-                    break;
-                // lessen, reduces LiveValue delta
-                case ~'<':
-                    e.delta(e.delta() - ct.values.get(index));
-                    break;
-                // raise, increases LiveValue delta
-                case ~'>':
-                    e.delta(e.delta() + ct.values.get(index));
-                    break;
-            }
-            e.actual(v);
-        }         
-        for (int i = 0; i < ct.unrelatedSymbols.size; i++) {
-            switch (ct.unrelatedSymbols.get(i)) {
-                case ~'d':
-                    physical.disarm();
-                    break;
-                case ~'s':
-                    physical.sunder(4.0);
-                    break;
-                case ~'S':
-                    physical.sunder(8.0);
-                    break;
-            }
+            LiveValue e = changing.getAt(i);
+            e.actual(hold(e, e.actual(), c.strikeOps[index], c.amounts[index]));
         }
-
+        strikeUnrelated(physical, ct);
         return physical;
     }
     /**
@@ -465,47 +509,14 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical holdPhysical(Physical physical, ChangeTable ct)
     {
         if(ct == null) return physical;
+        Compiled c = ct.compile();
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
-        LiveValue e;
         int index;
-        double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
-            e = changing.getAt(i);
-            v = e.actual();
-            if ((index = ct.indexer.getInt(k)) < 0)
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            if ((index = c.find(changing.keyAt(i))) < 0)
                 continue;
-            op = ct.changeSymbols.get(index);
-            switch (op) {
-                case '=':
-                    v = ct.values.get(index);
-                    break;
-                case '+':
-                    v += ct.values.get(index);
-                    break;
-                case '-':
-                    v -= ct.values.get(index);
-                    break;
-                case '*':
-                    v *= ct.values.get(index);
-                    break;
-                // set delta
-                case ':':
-                    e.delta(ct.values.get(index));
-                    break;
-                // lessen, reduces LiveValue delta
-                case '<':
-                    e.delta(e.delta() - ct.values.get(index));
-                    break;
-                // raise, increases LiveValue delta
-                case '>':
-                    e.delta(e.delta() + ct.values.get(index));
-                    break;
-            }
-            e.actual(v);
+            LiveValue e = changing.getAt(i);
+            e.actual(hold(e, e.actual(), c.holdOps[index], c.amounts[index]));
         }
         return physical;
     }
@@ -522,49 +533,14 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical releasePhysical(Physical physical, ChangeTable ct)
     {
         if(ct == null) return physical;
+        Compiled c = ct.compile();
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
-        LiveValue e;
         int index;
-        double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
-            e = changing.getAt(i);
-            v = e.actual();
-
-            if ((index = ct.indexer.getInt(k)) < 0)
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            if ((index = c.find(changing.keyAt(i))) < 0)
                 continue;
-            op = ct.changeSymbols.get(index);
-            switch (op) {
-                case '=': // not yet sure how non-destructive assignment can even work
-                    //v = ct.values.get(index);
-                    break;
-                case '+':
-                    v -= ct.values.get(index);
-                    break;
-                case '-':
-                    v += ct.values.get(index);
-                    break;
-                case '*':
-                    v /= ct.values.get(index);
-                    break;
-                // set delta
-                case ':': // again, not sure how non-destructive assignment works
-                    //e.delta(ct.values.get(index));
-                    break;
-                // lessen, reduces LiveValue delta
-                case '<':
-                    e.delta(e.delta() + ct.values.get(index));
-                    break;
-                // raise, increases LiveValue delta
-                case '>':
-                    e.delta(e.delta() - ct.values.get(index));
-                    break;
-            }
-
-            e.actual(v);
+            LiveValue e = changing.getAt(i);
+            e.actual(release(e, e.actual(), c.holdOps[index], c.amounts[index]));
         }
         return physical;
     }
@@ -581,67 +557,25 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical strikePhysical(Physical physical, Iterable<ChangeTable> tables)
     {
         if(tables == null) return physical;
+        Compiled[] stack = stack(tables);
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
+        Compiled c;
         LiveValue e;
         int index;
         double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            ConstantKey k = changing.keyAt(i);
+            int slot = StatChanges.index(k);
             e = changing.getAt(i);
             v = e.actual();
-            for (ChangeTable ct : tables) {
-                if ((index = ct.indexer.getInt(k)) < 0)
-                    continue;
-                op = ct.changeSymbols.get(index);
-                switch (op) {
-                    case ~'=':
-                        v = ct.values.get(index);
-                        break;
-                    case ~'+':
-                        v += ct.values.get(index);
-                        break;
-                    case ~'-':
-                        v -= ct.values.get(index);
-                        break;
-                    case ~'*':
-                        v *= ct.values.get(index);
-                        break;
-                    // be careful of these delta-related effects in strikes; they must be reversed with another ChangeTable, if at all
-                    // set delta
-                    case ~':':
-                        e.delta(ct.values.get(index));
-                        break;
-                    // lessen, reduces LiveValue delta
-                    case ~'<':
-                        e.delta(e.delta() - ct.values.get(index));
-                        break;
-                    // raise, increases LiveValue delta
-                    case ~'>':
-                        e.delta(e.delta() + ct.values.get(index));
-                        break;
-
-                }
+            for (int t = 0; (c = stack[t]) != null; t++) {
+                if ((index = c.find(slot, k)) >= 0)
+                    v = hold(e, v, c.strikeOps[index], c.amounts[index]);
             }
             e.actual(v);
         }
-        for(ChangeTable ct : tables) {
-            for (int i = 0; i < ct.unrelatedSymbols.size; i++) {
-                switch (ct.unrelatedSymbols.get(i))
-                {
-                    case ~'d':
-                        physical.disarm();
-                        break;
-                    case ~'s':
-                        physical.sunder(4.0);
-                        break;
-                    case ~'S':
-                        physical.sunder(8.0);
-                        break;
-                }
-            }
+        for (int t = 0; (c = stack[t]) != null; t++) {
+            strikeUnrelated(physical, c.table);
         }
         return physical;
     }
@@ -659,48 +593,20 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical holdPhysical(Physical physical, Iterable<ChangeTable> tables)
     {
         if(tables == null) return physical;
+        Compiled[] stack = stack(tables);
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
+        Compiled c;
         LiveValue e;
         int index;
         double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            ConstantKey k = changing.keyAt(i);
+            int slot = StatChanges.index(k);
             e = changing.getAt(i);
             v = e.actual();
-            for (ChangeTable ct : tables) {
-                if ((index = ct.indexer.getInt(k)) < 0)
-                    continue;
-                op = ct.changeSymbols.get(index);
-                switch (op) {
-                    case '=':
-                        v = ct.values.get(index);
-                        break;
-                    case '+':
-                        v += ct.values.get(index);
-                        break;
-                    case '-':
-                        v -= ct.values.get(index);
-                        break;
-                    case '*':
-                        v *= ct.values.get(index);
-                        break;
-                    // set delta
-                    case ':':
-                        e.delta(ct.values.get(index));
-                        break;
-                    // lessen, reduces LiveValue delta
-                    case '<':
-                        e.delta(e.delta() - ct.values.get(index));
-                        break;
-                    // raise, increases LiveValue delta
-                    case '>':
-                        e.delta(e.delta() + ct.values.get(index));
-                        break;
-
-                }
+            for (int t = 0; (c = stack[t]) != null; t++) {
+                if ((index = c.find(slot, k)) >= 0)
+                    v = hold(e, v, c.holdOps[index], c.amounts[index]);
             }
             e.actual(v);
         }
@@ -719,51 +625,151 @@ public class ChangeTable extends AbstractCollection<ConstantKey> {
     public static Physical releasePhysical(Physical physical, Iterable<ChangeTable> tables)
     {
         if(tables == null) return physical;
+        Compiled[] stack = stack(tables);
         OrderedMap<ConstantKey, LiveValue> changing = physical.stats;
-        int originalSize = changing.size();
-        ConstantKey k;
-        int op;
+        Compiled c;
         LiveValue e;
         int index;
         double v;
-        for (int i = 0; i < originalSize; i++) {
-            k = changing.keyAt(i);
+        for (int i = 0, originalSize = changing.size(); i < originalSize; i++) {
+            ConstantKey k = changing.keyAt(i);
+            int slot = StatChanges.index(k);
             e = changing.getAt(i);
             v = e.actual();
-            for (ChangeTable ct : tables) {
-                if ((index = ct.indexer.getInt(k)) < 0)
+            for (int t = 0; (c = stack[t]) != null; t++) {
+                if ((index = c.find(slot, k)) >= 0)
+                    v = release(e, v, c.holdOps[index], c.amounts[index]);
+            }
+            e.actual(v);
+        }
+        return physical;
+    }
+
+    /**
+     * Applies one compiled operation to a LiveValue whose actual value is being worked out as v, and returns the new
+     * v. Operations on delta change the LiveValue right away.
+     */
+    private static double hold(LiveValue e, double v, byte op, double amount) {
+        switch (op) {
+            case SET:
+                return amount;
+            case ADD:
+                return v + amount;
+            case SUBTRACT:
+                return v - amount;
+            case MULTIPLY:
+                return v * amount;
+            case SET_DELTA:
+                e.delta(amount);
+                break;
+            case LESSEN:
+                e.delta(e.delta() - amount);
+                break;
+            case RAISE:
+                e.delta(e.delta() + amount);
+                break;
+        }
+        return v;
+    }
+
+    /**
+     * Reverses one compiled operation the way {@link #hold(LiveValue, double, byte, double)} applied it. Setting a
+     * value or delta can't be reversed, so those do nothing.
+     */
+    private static double release(LiveValue e, double v, byte op, double amount) {
+        switch (op) {
+            case ADD:
+                return v - amount;
+            case SUBTRACT:
+                return v + amount;
+            case MULTIPLY:
+                return v / amount;
+            case LESSEN:
+                e.delta(e.delta() + amount);
+                break;
+            case RAISE:
+                e.delta(e.delta() - amount);
+                break;
+        }
+        return v;
+    }
+
+    private static void strikeUnrelated(Physical physical, ChangeTable ct) {
+        for (int i = 0; i < ct.unrelatedSymbols.size; i++) {
+            switch (ct.unrelatedSymbols.get(i)) {
+                case ~'d':
+                    physical.disarm();
+                    break;
+                case ~'s':
+                    physical.sunder(4.0);
+                    break;
+                case ~'S':
+                    physical.sunder(8.0);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Combines the non-destructive changes to each stat in tables, applied in order and then extra, into a scale and a
+     * shift for each stat index from {@link StatChanges#index(ConstantKey)}. Holding all of them turns an actual value
+     * v into {@code scale * v + shift}, before it is clamped. Changes to delta don't affect actual values, so they are
+     * left out. If extra is already in tables, it is only applied once, just as adding it to them would do.
+     */
+    static void combine(OrderedSet<ChangeTable> tables, ChangeTable extra, double[] scale, double[] shift) {
+        Arrays.fill(scale, 1.0);
+        Arrays.fill(shift, 0.0);
+        if (extra != null && tables.contains(extra))
+            extra = null;
+        for (int t = 0, n = tables.size(); t <= n; t++) {
+            ChangeTable ct = t < n ? tables.getAt(t) : extra;
+            if (ct == null)
+                continue;
+            Compiled c = ct.compile();
+            for (int slot = 0; slot < StatChanges.COUNT; slot++) {
+                int index = c.slots[slot];
+                if (index < 0)
                     continue;
-                op = ct.changeSymbols.get(index);
-                switch (op) {
-                    case '=': // not yet sure how non-destructive assignment can even work
-                        //v = ct.values.get(index);
+                double amount = c.amounts[index];
+                switch (c.holdOps[index]) {
+                    case SET:
+                        scale[slot] = 0.0;
+                        shift[slot] = amount;
                         break;
-                    case '+':
-                        v -= ct.values.get(index);
+                    case ADD:
+                        shift[slot] += amount;
                         break;
-                    case '-':
-                        v += ct.values.get(index);
+                    case SUBTRACT:
+                        shift[slot] -= amount;
                         break;
-                    case '*':
-                        v /= ct.values.get(index);
-                        break;
-                    // set delta
-                    case ':': // again, not sure how non-destructive assignment works
-                        //e.delta(ct.values.get(index));
-                        break;
-                    // lessen, reduces LiveValue delta
-                    case '<':
-                        e.delta(e.delta() + ct.values.get(index));
-                        break;
-                    // raise, increases LiveValue delta
-                    case '>':
-                        e.delta(e.delta() - ct.values.get(index));
+                    case MULTIPLY:
+                        scale[slot] *= amount;
+                        shift[slot] *= amount;
                         break;
                 }
             }
-            e.actual(v);
         }
-        return physical;
+    }
+
+    private static final ThreadLocal<Compiled[]> stacks = ThreadLocal.withInitial(() -> new Compiled[8]);
+
+    /**
+     * Compiles each of the tables and puts them in order into an array reused by this thread, followed by null.
+     */
+    private static Compiled[] stack(Iterable<ChangeTable> tables) {
+        Compiled[] stack = stacks.get();
+        int n = 0;
+        for (ChangeTable ct : tables) {
+            if (ct == null)
+                continue;
+            if (n + 1 >= stack.length) {
+                stack = Arrays.copyOf(stack, stack.length << 1);
+                stacks.set(stack);
+            }
+            stack[n++] = ct.compile();
+        }
+        stack[n] = null;
+        return stack;
     }
 
     /**
@@ -51,9 +51,26 @@ public class Condition extends EpiData {
         if (parent.changes != null) {
             ChangeTable.holdPhysical(attachedTo, parent.changes);
             attachedTo.statEffects.add(parent.changes);
+            attachedTo.changedStatEffects();
         }
     }
 
+    /**
+     * Puts back a condition that was saved along with the stats of what it was attached to, which already include its
+     * changes, so they aren't held a second time. Its ChangeTable is not added to statEffects here, so the caller can
+     * put statEffects back in their saved order.
+     */
+    public static Condition restore(ConditionBlueprint blueprint, Physical attached, Element element, int currentTick) {
+        Condition c = new Condition();
+        c.parent = blueprint;
+        c.suppressors = new ArrayList<>();
+        c.overrideElement = element;
+        c.currentTick = currentTick;
+        c.attachedTo = attached;
+        attached.conditions.add(c);
+        return c;
+    }
+
     /**
      * Returns true if it has an ancestor that is the passed in blueprint.
      *
@@ -75,6 +92,7 @@ public class Condition extends EpiData {
         if (parent.changes != null) {
             ChangeTable.releasePhysical(attachedTo, parent.changes);
             attachedTo.statEffects.remove(parent.changes);
+            attachedTo.changedStatEffects();
         }
         attachedTo.overlaySymbol = '\uffff';
         attachedTo = null;
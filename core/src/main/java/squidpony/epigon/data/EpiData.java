@@ -21,6 +21,10 @@ import java.io.Serializable;
  * algorithm this uses is similar to LightRNG, but uses Pelle Evensen's Moremur mixer instead of SplittableRandom's
  * mixer (Variant 13), uses a different increment (which shouldn't affect quality), and incoporates a XOR early on with
  * the idHash of the EpiData to make results a little more varied.
+ * <br>
+ * Because of that state, using the same EpiData from more than one thread at a time isn't safe by default. A thread can
+ * instead take its random numbers from a {@link RandomContext} of its own with {@link #useRandomContext(RandomContext)},
+ * which leaves the state of every EpiData alone.
  */
 public abstract class EpiData extends AbstractRNG implements Serializable, StatefulRandomness {
     protected static final long serialVersionUID = 0L;
@@ -34,6 +38,25 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
     private long state;
 //    public static int count = 0;
     private static int uniqueIntGen = Epigon.rootChaos.nextInt();
+    /**
+     * How many idHash values each block from {@link #reserveIdBlocks(int)} holds, unless a size is given with
+     * {@link #reserveIdBlocks(int, int)}. This is plenty for one generated level of the default size, even with every
+     * floor copied per tile.
+     */
+    public static final int ID_BLOCK = 1 << 16;
+    /**
+     * The idHash before the next one and how many are left, for threads using a block from
+     * {@link #useIdBlock(int, int, int)}; not set on threads using the shared sequence.
+     */
+    private static final ThreadLocal<int[]> blockIds = new ThreadLocal<>();
+    /**
+     * The RandomContext each thread uses instead of the state of each EpiData, if any.
+     */
+    private static final ThreadLocal<RandomContext> contexts = new ThreadLocal<>();
+    /**
+     * How many threads are using a RandomContext; while none are, random numbers skip looking one up.
+     */
+    private static volatile int contextThreads;
     
     public final void setState(final int s) {
 //        // 33,554,432 possible seeds should be enough for Epigon.
@@ -44,7 +67,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
     }
     
     public EpiData() {
-        idHash = (uniqueIntGen += 0x632BE5AB);
+        idHash = nextIdHash();
         setState(idHash);
         //count++;
     }
@@ -54,6 +77,155 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
         this.name = name;
     }
 
+    /**
+     * Sets aside blocks of {@link #ID_BLOCK} idHash values each, so work split up between threads can give each piece
+     * its own block. What each piece makes then gets the same idHash values, and so the same random states, no matter
+     * how many threads there are or what order the pieces run in.
+     *
+     * @param blocks how many blocks to set aside
+     * @return the start of the blocks, to be given to {@link #useIdBlock(int, int)}
+     */
+    public static int reserveIdBlocks(int blocks) {
+        return reserveIdBlocks(blocks, ID_BLOCK);
+    }
+
+    /**
+     * Sets aside blocks of idHash values like {@link #reserveIdBlocks(int)}, with each block holding blockSize values,
+     * for work that can make more EpiData than {@link #ID_BLOCK}.
+     *
+     * @param blocks how many blocks to set aside
+     * @param blockSize how many idHash values each block holds
+     * @return the start of the blocks, to be given to {@link #useIdBlock(int, int, int)} with the same blockSize
+     */
+    public static synchronized int reserveIdBlocks(int blocks, int blockSize) {
+        int start = uniqueIntGen;
+        uniqueIntGen += blocks * blockSize * 0x632BE5AB;
+        return start;
+    }
+
+    /**
+     * Makes EpiData created on the current thread take their idHash from one block set aside by
+     * {@link #reserveIdBlocks(int)}, until {@link #useSharedIds()} is called.
+     *
+     * @param start the value returned by reserveIdBlocks
+     * @param block which of the reserved blocks to use, starting at 0
+     */
+    public static void useIdBlock(int start, int block) {
+        useIdBlock(start, block, ID_BLOCK);
+    }
+
+    /**
+     * Makes EpiData created on the current thread take their idHash from one block set aside by
+     * {@link #reserveIdBlocks(int, int)}, until {@link #useSharedIds()} is called. If the block runs out, creating
+     * another EpiData on this thread throws an IllegalStateException, since going on with ids from the shared sequence
+     * would make everything after depend on what other threads did first.
+     *
+     * @param start the value returned by reserveIdBlocks
+     * @param block which of the reserved blocks to use, starting at 0
+     * @param blockSize the blockSize given to reserveIdBlocks
+     */
+    public static void useIdBlock(int start, int block, int blockSize) {
+        blockIds.set(new int[]{start + block * blockSize * 0x632BE5AB, blockSize});
+    }
+
+    /**
+     * Makes EpiData created on the current thread go back to the shared idHash sequence.
+     */
+    public static void useSharedIds() {
+        blockIds.remove();
+    }
+
+    /**
+     * Stops using an idHash block on the current thread for a moment, such as to make something shared between all
+     * pieces of work that shouldn't take an id from whichever block happened to ask first.
+     *
+     * @return the block that was in use, or null, to be given to {@link #resumeIdBlock(int[])}
+     */
+    public static int[] suspendIdBlock() {
+        int[] block = blockIds.get();
+        blockIds.remove();
+        return block;
+    }
+
+    /**
+     * Goes back to the block returned by {@link #suspendIdBlock()}, if there was one.
+     */
+    public static void resumeIdBlock(int[] block) {
+        if (block != null) {
+            blockIds.set(block);
+        }
+    }
+
+    /**
+     * Makes random numbers from EpiData on the current thread come from the given context, until
+     * {@link #useOwnRandomness()} is called, instead of each EpiData's own state. Each EpiData still mixes in its idHash,
+     * so two EpiData give different numbers from the same context.
+     *
+     * @param context the context to use; null is the same as calling {@link #useOwnRandomness()}
+     * @return the context the current thread was using before, or null, to be given back here later
+     */
+    public static RandomContext useRandomContext(RandomContext context) {
+        RandomContext previous = contexts.get();
+        if (context == null) {
+            useOwnRandomness();
+            return previous;
+        }
+        if (previous == null) {
+            changeContextThreads(1);
+        }
+        contexts.set(context);
+        return previous;
+    }
+
+    /**
+     * Makes EpiData on the current thread go back to using their own states for random numbers.
+     */
+    public static void useOwnRandomness() {
+        if (contexts.get() != null) {
+            contexts.remove();
+            changeContextThreads(-1);
+        }
+    }
+
+    /**
+     * The context the current thread is using for random numbers, or null if each EpiData uses its own state.
+     */
+    public static RandomContext currentRandomContext() {
+        return contextThreads == 0 ? null : contexts.get();
+    }
+
+    private static synchronized void changeContextThreads(int change) {
+        contextThreads += change;
+    }
+
+    /**
+     * Advances whichever state random numbers come from on this thread and returns it.
+     */
+    private long step() {
+        if (contextThreads != 0) {
+            RandomContext context = contexts.get();
+            if (context != null) {
+                return context.state += 0x6C8E9CF570932BD5L;
+            }
+        }
+        return state += 0x6C8E9CF570932BD5L;
+    }
+
+    private static int nextIdHash() {
+        int[] block = blockIds.get();
+        if (block != null) {
+            if (block[1]-- <= 0) {
+                throw new IllegalStateException("Ran out of idHash values in a reserved block; reserve larger blocks with reserveIdBlocks(int, int)");
+            }
+            return block[0] += 0x632BE5AB;
+        }
+        return nextSharedIdHash();
+    }
+
+    private static synchronized int nextSharedIdHash() {
+        return uniqueIntGen += 0x632BE5AB;
+    }
+
     /**
      * Get the current internal state of the StatefulRandomness as a long.
      *
@@ -77,7 +249,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
     @Override
     public final int nextInt()
     {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -96,7 +268,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
     @Override
     public final int next(final int bits)
     {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -148,7 +320,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
      */
     @Override
     public final long nextLong() {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -175,7 +347,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
      */
     @Override
     public final boolean nextBoolean() {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -201,7 +373,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
      */
     @Override
     public final double nextDouble() {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -232,7 +404,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
      */
     @Override
     public final float nextFloat() {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
@@ -254,7 +426,7 @@ public abstract class EpiData extends AbstractRNG implements Serializable, State
     
     public final double nextCurvedDouble()
     {
-        long x = (state += 0x6C8E9CF570932BD5L) ^ idHash;
+        long x = step() ^ idHash;
         x ^= x >>> 27;
         x *= 0x3C79AC492BA7B653L;
         x ^= x >>> 33;
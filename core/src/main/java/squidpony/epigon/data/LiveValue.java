@@ -12,6 +12,9 @@ package squidpony.epigon.data;
  *
  * Note that a stable value just cancels out a delta, it does not move actual towards base.
  *
+ * While a creature is on a level, its values are kept in that level's {@link StatStore} instead of here; everything
+ * works the same either way.
+ *
  * @author Eben Howard
  */
 public class LiveValue {
@@ -34,6 +37,9 @@ public class LiveValue {
     private double inertia; // change in delta per turn
     private boolean stable; // when true inertia will not reverse the delta's sign when it crosses zero
 
+    transient StatStore store; // when not null, the values above are out of date and the ones in the store are used
+    transient int slot; // where this is in the store
+
     public LiveValue() {
         this(1.0);
     }
@@ -54,13 +60,13 @@ public class LiveValue {
     }
 
     public LiveValue(LiveValue other) {
-        base = other.base;
-        max = other.max;
-        min = other.min;
-        actual = other.actual;
-        delta = other.delta;
-        inertia = other.inertia;
-        stable = other.stable;
+        base = other.base();
+        max = other.max();
+        min = other.min();
+        actual = other.actual();
+        delta = other.delta();
+        inertia = other.inertia();
+        stable = other.stable();
     }
 
     public void set(double base)
@@ -72,12 +78,61 @@ public class LiveValue {
         delta = 0;
         inertia = 0;
         stable = true;
+        push();
+    }
+
+    /**
+     * Moves the values into the given slot of a store, which is used from then on.
+     */
+    void attach(StatStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+        push();
+    }
+
+    /**
+     * Moves the values back out of the store, so this stands alone again.
+     */
+    void detach() {
+        pull();
+        store = null;
+    }
+
+    /**
+     * Copies the values from the store into the fields here, if there is a store.
+     */
+    private void pull() {
+        if (store != null) {
+            base = store.base[slot];
+            max = store.max[slot];
+            min = store.min[slot];
+            actual = store.actual[slot];
+            delta = store.delta[slot];
+            inertia = store.inertia[slot];
+            stable = store.stable[slot];
+        }
+    }
+
+    /**
+     * Copies the fields here into the store, if there is a store.
+     */
+    private void push() {
+        if (store != null) {
+            store.base[slot] = base;
+            store.max[slot] = max;
+            store.min[slot] = min;
+            store.actual[slot] = actual;
+            store.delta[slot] = delta;
+            store.inertia[slot] = inertia;
+            store.stable[slot] = stable;
+        }
     }
 
     /**
      * Changes the stat by one turn's delta and inertia and returns the amount changed.
      */
     public double tick() {
+        pull();
         // NOTE - should inertia go before or after delta application?
         if (inertia != 0) {
             if (stable && (delta < 0) != (delta + inertia < 0)) {
@@ -92,6 +147,7 @@ public class LiveValue {
             //actual = Double.max(actual, min); // TODO - reconcile with rollover for stat damage
             actual = Double.min(actual, max);
         }
+        push();
 
         return delta;
     }
@@ -100,6 +156,7 @@ public class LiveValue {
      * Modifies this value in place by the values in the provided object.
      */
     public void modify(LiveValueModification mod) {
+        pull();
         // these default to null, so we need to check before overwriting
         base = mod.baseOverwrite == null ? base : mod.baseOverwrite;
         actual = mod.actualOverwrite == null ? actual : mod.actualOverwrite;
@@ -111,7 +168,7 @@ public class LiveValue {
 
         // these default to 1 if unassigned, so nothing changes if they are the default
         base *=    mod.baseMultiply;
-        multiplyActual(mod.actualMultiply);
+        actual = Math.min(Math.max(actual * mod.actualMultiply, min), max);
         max *=     mod.maxMultiply;
         min *=     mod.minMultiply;
         delta *=   mod.deltaMultiply;
@@ -119,49 +176,62 @@ public class LiveValue {
 
         // these default to 0 if unassigned, so this is similar to the above case
         base +=    mod.baseAdd;
-        addActual(mod.actualAdd);
+        actual = Math.min(Math.max(actual + mod.actualAdd, min), max);
         max +=     mod.maxAdd;
         min +=     mod.minAdd;
         delta +=   mod.deltaAdd;
         inertia += mod.inertiaAdd;
+        push();
     }
 
     public void addActual(double change)
     {
-        actual = Math.min(Math.max(actual + change, min), max);
+        actual(actual() + change);
     }
 
     public void multiplyActual(double change)
     {
-        actual = Math.min(Math.max(actual * change, min), max);
+        actual(actual() * change);
     }
 
     public double base() {
-        return base;
+        return store == null ? base : store.base[slot];
     }
 
     public void base(double base) {
-        this.base = base;
+        if (store == null) {
+            this.base = base;
+        } else {
+            store.base[slot] = base;
+        }
     }
 
     public double max() {
-        return max;
+        return store == null ? max : store.max[slot];
     }
 
     public void max(double max) {
-        this.max = max;
+        if (store == null) {
+            this.max = max;
+        } else {
+            store.max[slot] = max;
+        }
     }
 
     public double min() {
-        return min;
+        return store == null ? min : store.min[slot];
     }
 
     public void min(double min) {
-        this.min = min;
+        if (store == null) {
+            this.min = min;
+        } else {
+            store.min[slot] = min;
+        }
     }
 
     public double actual() {
-        return actual;
+        return store == null ? actual : store.actual[slot];
     }
 
     /**
@@ -169,35 +239,51 @@ public class LiveValue {
      * @param actual the double to set as the "actual" value; will be clamped to be within min and max
      */
     public void actual(double actual) {
-        this.actual = Math.min(Math.max(actual, min), max);
+        if (store == null) {
+            this.actual = Math.min(Math.max(actual, min), max);
+        } else {
+            store.actual[slot] = Math.min(Math.max(actual, store.min[slot]), store.max[slot]);
+        }
     }
 
     public double delta() {
-        return delta;
+        return store == null ? delta : store.delta[slot];
     }
 
     public void delta(double delta) {
-        this.delta = delta;
+        if (store == null) {
+            this.delta = delta;
+        } else {
+            store.delta[slot] = delta;
+        }
     }
 
     public double inertia() {
-        return inertia;
+        return store == null ? inertia : store.inertia[slot];
     }
 
     public void inertia(double inertia) {
-        this.inertia = inertia;
+        if (store == null) {
+            this.inertia = inertia;
+        } else {
+            store.inertia[slot] = inertia;
+        }
     }
 
     public boolean stable() {
-        return stable;
+        return store == null ? stable : store.stable[slot];
     }
 
     public void stable(boolean stable) {
-        this.stable = stable;
+        if (store == null) {
+            this.stable = stable;
+        } else {
+            store.stable[slot] = stable;
+        }
     }
 
     @Override
     public String toString() {
-        return "Live{" + actual + "}";
+        return "Live{" + actual() + "}";
     }
 }
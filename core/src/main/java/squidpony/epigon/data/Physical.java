@@ -74,6 +74,11 @@ public class Physical extends EpiData {
     // initial stats on instantiation come from required modification
     public OrderedMap<ConstantKey, LiveValue> stats = new OrderedMap<ConstantKey, LiveValue>(32, 0.5f, ConstantKey.ConstantKeyHasher.instance);
     public OrderedSet<ChangeTable> statEffects = new OrderedSet<>(8, CrossHash.identityHasher);
+
+    // statEffects plus a weapon's changes, combined by ChangeTable.combine; see heldStat
+    private transient double[] heldScale, heldShift;
+    private transient ChangeTable heldWeapon;
+    private transient int heldEffects = -1; // how many statEffects there were when combined, or -1 to recombine
     public OrderedMap<ConstantKey, Rating> statProgression = new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance);
     public ArrayList<Physical> inventory = new ArrayList<>();
     public ArrayList<Physical> optionalInventory = new ArrayList<>(); // For use when this is a blueprint item
@@ -162,6 +167,43 @@ public class Physical extends EpiData {
         conditionsToRemove.clear();
     }
 
+    /**
+     * Moves every stat along by one turn's delta and inertia, then rolls over any stats that went below 0, recording
+     * what changed in changes. Doesn't allocate anything.
+     */
+    public void tickStats(StatChanges changes) {
+        for (int i = 0, n = stats.size(); i < n; i++) {
+            double amt = stats.getAt(i).tick();
+            if (amt != 0) {
+                changes.add(stats.keyAt(i), amt);
+            }
+        }
+        rolloverStats(changes);
+    }
+
+    /**
+     * Moves anything below 0 in a stat that rolls over onto the stat it rolls over to, in
+     * {@link Stat#rolloverProcessOrder}, recording what changed in changes. Doesn't allocate anything.
+     */
+    public void rolloverStats(StatChanges changes) {
+        for (Stat s : Stat.rolloverProcessOrder) {
+            LiveValue lv = stats.get(s);
+            if (lv == null) {
+                continue; // doesn't have this stat so skip it
+            }
+            double val = lv.actual();
+            if (val < 0) {
+                lv.actual(0);
+                Stat rollover = s.getRollover();
+                LiveValue target = stats.get(rollover);
+                if (target != null) {
+                    target.addActual(val);
+                    changes.add(rollover, val);
+                }
+            }
+        }
+    }
+
     public boolean countsAs(Physical blueprint) {
         if (this.equals(blueprint) || countsAs.contains(blueprint)) {
             return true;
@@ -449,6 +491,45 @@ public class Physical extends EpiData {
         return stats.getOrDefault(stat, LiveValue.ZERO).actual();
     }
 
+    /**
+     * Gets what {@link #actualStat(ConstantKey)} would be with every ChangeTable in statEffects held, then the weapon's
+     * changes held too, without holding or releasing anything. The changes are combined once and reused until
+     * {@link #changedStatEffects()} is called or a different weapon is used, so this only costs a lookup and a multiply.
+     * Stats that aren't a {@link Stat} or {@link CalcStat} just give their actual value.
+     *
+     * @param stat   the stat to get
+     * @param weapon usually the calcStats of a Weapon; may be null
+     * @return the stat's actual value with all of its changes held
+     */
+    public double heldStat(ConstantKey stat, ChangeTable weapon) {
+        LiveValue lv = stats.get(stat);
+        if (lv == null) {
+            return 0.0;
+        }
+        int slot = StatChanges.index(stat);
+        if (slot < 0) {
+            return lv.actual();
+        }
+        if (heldEffects != statEffects.size() || heldWeapon != weapon) {
+            if (heldScale == null) {
+                heldScale = new double[StatChanges.COUNT];
+                heldShift = new double[StatChanges.COUNT];
+            }
+            ChangeTable.combine(statEffects, weapon, heldScale, heldShift);
+            heldWeapon = weapon;
+            heldEffects = statEffects.size();
+        }
+        return Math.min(Math.max(heldScale[slot] * lv.actual() + heldShift[slot], lv.min()), lv.max());
+    }
+
+    /**
+     * Must be called after statEffects, or any ChangeTable in it, is changed, so {@link #heldStat(ConstantKey, ChangeTable)}
+     * uses the new changes.
+     */
+    public void changedStatEffects() {
+        heldEffects = -1;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,53 @@
+package squidpony.epigon.data;
+
+import squidpony.squidmath.DiverRNG;
+
+/**
+ * A random state that EpiData on one thread can use instead of their own, set with
+ * {@link EpiData#useRandomContext(RandomContext)}. While a thread uses a context, random numbers from any EpiData on that
+ * thread advance the context's state and leave the EpiData's own state alone, so blueprints and other shared EpiData can
+ * be used from several threads at once, and the same context seed gives the same results when the same work is run again.
+ * <br>
+ * Contexts split into pieces that each get their own seed, given only by the seed this context started with and which
+ * piece it is, so work can be handed out to threads in any order and still replay the same way. A context should only
+ * be used by one thread at a time.
+ */
+public final class RandomContext {
+
+    private final long seed;
+    long state;
+
+    public RandomContext(long seed) {
+        this.seed = seed;
+        state = seed;
+    }
+
+    /**
+     * Makes a new context for one piece of work. Splitting with the same piece always gives the same seed, no matter
+     * how much this context has been used.
+     *
+     * @param piece which piece of work the new context is for
+     * @return a new context with its own seed
+     */
+    public RandomContext split(long piece) {
+        return new RandomContext(DiverRNG.determine(seed + piece * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * The seed this context started with.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Sets the current state, as when going back to a state saved with {@link #getState()} to replay something.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
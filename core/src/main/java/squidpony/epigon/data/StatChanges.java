@@ -0,0 +1,112 @@
+package squidpony.epigon.data;
+
+import squidpony.epigon.util.ConstantKey;
+
+/**
+ * How much each stat changed, kept in a primitive array indexed by the stat's ordinal, with {@link CalcStat} indices
+ * after all the {@link Stat} ones. Changes to the same stat are added together, and stats are remembered in the order
+ * they first changed. Meant to be cleared and used again, so recording changes never allocates or boxes anything.
+ */
+public class StatChanges {
+
+    private static final Stat[] stats = Stat.values();
+
+    /**
+     * How many different stats can be recorded.
+     */
+    public static final int COUNT = stats.length + CalcStat.all.length;
+
+    private final double[] amounts = new double[COUNT];
+    private final boolean[] present = new boolean[COUNT];
+    private final int[] order = new int[COUNT];
+    private int size;
+
+    /**
+     * Gets where the given stat goes in a primitive array of stats.
+     *
+     * @return the index of the stat, or -1 if it is neither a Stat nor a CalcStat
+     */
+    public static int index(ConstantKey key) {
+        if (key instanceof Stat) {
+            return ((Stat) key).ordinal();
+        } else if (key instanceof CalcStat) {
+            return stats.length + ((CalcStat) key).ordinal();
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the stat at the given index, the reverse of {@link #index(ConstantKey)}.
+     */
+    public static ConstantKey key(int index) {
+        return index < stats.length ? stats[index] : CalcStat.all[index - stats.length];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            amounts[order[i]] = 0.0;
+            present[order[i]] = false;
+        }
+        size = 0;
+    }
+
+    /**
+     * Records a change to the given stat, added onto any change to it already recorded.
+     */
+    public void add(ConstantKey key, double amount) {
+        int i = index(key);
+        if (i < 0) {
+            return;
+        }
+        if (!present[i]) {
+            present[i] = true;
+            order[size++] = i;
+        }
+        amounts[i] += amount;
+    }
+
+    /**
+     * Replaces everything here with the changes in other.
+     */
+    public void set(StatChanges other) {
+        clear();
+        if (other != null) {
+            for (int i = 0; i < other.size; i++) {
+                int idx = other.order[i];
+                present[idx] = true;
+                order[size++] = idx;
+                amounts[idx] = other.amounts[idx];
+            }
+        }
+    }
+
+    /**
+     * @return how much the stat changed, or 0 if it didn't
+     */
+    public double get(ConstantKey key) {
+        int i = index(key);
+        return i < 0 ? 0.0 : amounts[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The stat that was the n-th to change.
+     */
+    public ConstantKey keyAt(int n) {
+        return key(order[n]);
+    }
+
+    /**
+     * How much the n-th stat to change changed.
+     */
+    public double amountAt(int n) {
+        return amounts[order[n]];
+    }
+}
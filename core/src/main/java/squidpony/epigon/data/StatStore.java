@@ -0,0 +1,138 @@
+package squidpony.epigon.data;
+
+import java.util.Arrays;
+
+/**
+ * The stats of every creature on a level, kept as columns: one array for each part of a {@link LiveValue}, with a row
+ * of {@link StatChanges#COUNT} slots for each creature, indexed the same way as {@link StatChanges}. The LiveValues in
+ * an attached creature's {@link Physical#stats} keep working as before, but read and write their slot here, so
+ * {@link #tick()} can move every stat of every creature along in one loop over contiguous arrays.
+ *
+ * Creatures should be detached when they leave the level or die, which gives their LiveValues their values back.
+ * The game doesn't tick creatures' stats each turn, so nothing calls {@link #tick()} during play; it has none of the
+ * rollover or death checks the player's stats get, and would move dormant creatures along as well.
+ */
+public class StatStore {
+
+    private static final int WIDTH = StatChanges.COUNT;
+
+    double[] base, max, min, actual, delta, inertia;
+    boolean[] stable;
+
+    private int rows, used, freeCount;
+    private int[] freeRows;
+
+    public StatStore() {
+        this(16);
+    }
+
+    public StatStore(int rows) {
+        this.rows = Math.max(rows, 1);
+        int size = this.rows * WIDTH;
+        base = new double[size];
+        max = new double[size];
+        min = new double[size];
+        actual = new double[size];
+        delta = new double[size];
+        inertia = new double[size];
+        stable = new boolean[size];
+        freeRows = new int[this.rows];
+    }
+
+    /**
+     * Moves the stats of the given creature into a new row here. Stats that are already kept here stay where they are,
+     * so attaching the same creature again does nothing; a creature still attached to another store, such as the store
+     * of a level it came from, is detached from that store first.
+     */
+    public void attach(Physical creature) {
+        for (int i = 0, n = creature.stats.size(); i < n; i++) {
+            StatStore other = creature.stats.getAt(i).store;
+            if (other != null && other != this) {
+                other.detach(creature);
+            }
+        }
+        int row = -1;
+        for (int i = 0, n = creature.stats.size(); i < n; i++) {
+            LiveValue lv = creature.stats.getAt(i);
+            int column = StatChanges.index(creature.stats.keyAt(i));
+            if (column < 0 || lv.store == this || lv == LiveValue.ZERO || lv == LiveValue.ONE) {
+                continue;
+            }
+            if (row < 0) {
+                row = newRow();
+            }
+            lv.attach(this, row * WIDTH + column);
+        }
+    }
+
+    /**
+     * Moves the stats of the given creature back out of here, freeing its row.
+     */
+    public void detach(Physical creature) {
+        int row = -1;
+        for (int i = 0, n = creature.stats.size(); i < n; i++) {
+            LiveValue lv = creature.stats.getAt(i);
+            if (lv.store == this) {
+                row = lv.slot / WIDTH;
+                lv.detach();
+            }
+        }
+        if (row >= 0) {
+            int start = row * WIDTH, end = start + WIDTH;
+            Arrays.fill(base, start, end, 0.0);
+            Arrays.fill(max, start, end, 0.0);
+            Arrays.fill(min, start, end, 0.0);
+            Arrays.fill(actual, start, end, 0.0);
+            Arrays.fill(delta, start, end, 0.0);
+            Arrays.fill(inertia, start, end, 0.0);
+            Arrays.fill(stable, start, end, false);
+            freeRows[freeCount++] = row;
+        }
+    }
+
+    /**
+     * Moves every stat of every attached creature along by one turn's delta and inertia, the same way
+     * {@link LiveValue#tick()} does. Slots for stats a creature doesn't have are all 0 and don't change.
+     */
+    public void tick() {
+        final double[] actual = this.actual, delta = this.delta, inertia = this.inertia, max = this.max;
+        final boolean[] stable = this.stable;
+        for (int i = 0, n = used * WIDTH; i < n; i++) {
+            double d = delta[i], in = inertia[i];
+            if (in != 0) {
+                double next = d + in;
+                d = stable[i] && (d < 0) != (next < 0) ? 0 : next;
+                delta[i] = d;
+            }
+            if (d != 0) {
+                actual[i] = Math.min(actual[i] + d, max[i]);
+            }
+        }
+    }
+
+    /**
+     * How many creatures are attached.
+     */
+    public int size() {
+        return used - freeCount;
+    }
+
+    private int newRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (used == rows) {
+            rows <<= 1;
+            int size = rows * WIDTH;
+            base = Arrays.copyOf(base, size);
+            max = Arrays.copyOf(max, size);
+            min = Arrays.copyOf(min, size);
+            actual = Arrays.copyOf(actual, size);
+            delta = Arrays.copyOf(delta, size);
+            inertia = Arrays.copyOf(inertia, size);
+            stable = Arrays.copyOf(stable, size);
+            freeRows = Arrays.copyOf(freeRows, rows);
+        }
+        return used++;
+    }
+}
@@ -1,25 +1,35 @@
 package squidpony.epigon.data.control;
 
+import squidpony.epigon.data.EpiData;
 import squidpony.epigon.data.Physical;
 import squidpony.epigon.data.quality.Stone;
 import squidpony.epigon.data.quality.Tree;
 import squidpony.epigon.data.quality.Vegetable;
-import squidpony.squidmath.EnumOrderedMap;
-import squidpony.squidmath.EnumOrderedSet;
-import squidpony.squidmath.IRNG;
-import squidpony.squidmath.OrderedMap;
+import squidpony.squidmath.*;
 
 /**
- * Holds the needed references to objects in common use.
+ * Holds the needed references to objects in common use. The shared walls, floors and terrain can be requested from
+ * more than one thread at once, such as while levels are generated in parallel, and always take their idHash from the
+ * shared sequence (see {@link EpiData#useIdBlock(int, int)}) no matter which thread asks for them first.
  */
 public class DataPool {
 
     private static DataPool instance;
 
+    /**
+     * The kinds of shared Physical this pool hands out, as returned by {@link #sharedKind(Physical)}. Each kind can be
+     * asked for again with the data it was made from: a wall or floor from its stone, a terrain floor from its stone,
+     * symbol and color, and a terrain from its blueprint.
+     */
+    public static final int WALL = 0, FLOOR = 1, TERRAIN_FLOOR = 2, TERRAIN = 3;
+
     public final DataStarter dataStarter;
 
     private final EnumOrderedMap<Stone, Physical> walls = new EnumOrderedMap<>(Stone.class);
     private final EnumOrderedMap<Stone, Physical> floors = new EnumOrderedMap<>(Stone.class);
+    private final OrderedMap<Long, Physical> terrainFloors = new OrderedMap<>(64);
+    private final OrderedMap<Physical, Physical> terrains = new OrderedMap<>(16, 0.5f, CrossHash.identityHasher);
+    private final OrderedMap<Physical, Integer> shared = new OrderedMap<>(64, 0.5f, CrossHash.identityHasher);
     private final OrderedMap<Character, EnumOrderedSet<Vegetable>> vegetablesByTerrain = new OrderedMap<>(8);
     private final OrderedMap<Character, EnumOrderedSet<Tree>> treesByTerrain = new OrderedMap<>(8);
 
@@ -59,30 +69,116 @@ public class DataPool {
         }
     }
 
-    public Physical getWall(Stone stone) {
+    public synchronized Physical getWall(Stone stone) {
         Physical wall = walls.get(stone);
         if (wall != null) {
             return wall;
         }
 
-        wall = RecipeMixer.buildPhysical(RecipeMixer.buildPhysical(stone));
-        RecipeMixer.applyModification(wall, dataStarter.makeWall);
+        int[] idBlock = EpiData.suspendIdBlock();
+        try {
+            wall = RecipeMixer.buildPhysical(RecipeMixer.buildPhysical(stone));
+            RecipeMixer.applyModification(wall, dataStarter.makeWall);
+        } finally {
+            EpiData.resumeIdBlock(idBlock);
+        }
         walls.put(stone, wall);
+        shared.put(wall, WALL);
         return wall;
     }
 
-    public Physical getFloor(Stone stone) {
+    public synchronized Physical getFloor(Stone stone) {
         Physical floor = floors.get(stone);
         if (floor != null) {
             return floor;
         }
 
-        floor = RecipeMixer.buildPhysical(RecipeMixer.buildPhysical(stone));
+        int[] idBlock = EpiData.suspendIdBlock();
+        try {
+            floor = RecipeMixer.buildPhysical(RecipeMixer.buildPhysical(stone));
+        } finally {
+            EpiData.resumeIdBlock(idBlock);
+        }
         floor.name = stone.toString() + " floor";
         floors.put(stone, floor);
+        shared.put(floor, FLOOR);
+        return floor;
+    }
+
+    /**
+     * Gets the one canonical floor for the given stone, symbol, and color bucket (see {@link #colorBucket(float)}).
+     * Every floor in a bucket gets the color in the middle of that bucket, so it doesn't matter which request for a
+     * bucket comes first.
+     *
+     * Floors returned here are shared by many tiles and must not be changed in place; use
+     * {@link squidpony.epigon.mapping.EpiTile#editableFloor()} to get a copy that can be changed.
+     */
+    public synchronized Physical getFloor(Stone stone, char symbol, float color) {
+        final long key = (long) stone.ordinal() << 32 | (long) symbol << 12 | colorBucket(color);
+        Physical floor = terrainFloors.get(key);
+        if (floor != null) {
+            return floor;
+        }
+
+        int[] idBlock = EpiData.suspendIdBlock();
+        try {
+            floor = RecipeMixer.buildPhysical(getFloor(stone));
+        } finally {
+            EpiData.resumeIdBlock(idBlock);
+        }
+        floor.symbol = symbol;
+        floor.color = NumberTools.intBitsToFloat(NumberTools.floatToIntBits(color) & 0xFEF0F0F0 | 0x00080808);
+        floor.name = "modified " + symbol;
+        terrainFloors.put(key, floor);
+        shared.put(floor, TERRAIN_FLOOR);
         return floor;
     }
 
+    /**
+     * Gets one canonical copy of the given terrain blueprint, such as water or grass, to be shared by every tile that
+     * uses it. Like the other shared floors, it must not be changed in place.
+     */
+    public synchronized Physical getTerrain(Physical blueprint) {
+        Physical terrain = terrains.get(blueprint);
+        if (terrain != null) {
+            return terrain;
+        }
+
+        int[] idBlock = EpiData.suspendIdBlock();
+        try {
+            terrain = RecipeMixer.buildPhysical(blueprint);
+        } finally {
+            EpiData.resumeIdBlock(idBlock);
+        }
+        terrains.put(blueprint, terrain);
+        shared.put(terrain, TERRAIN);
+        return terrain;
+    }
+
+    /**
+     * Returns true if the given Physical is one of the walls or floors handed out by this pool to many tiles at once.
+     */
+    public synchronized boolean isShared(Physical physical) {
+        return shared.containsKey(physical);
+    }
+
+    /**
+     * Gets which kind of shared Physical this is, such as {@link #WALL}, or -1 if it isn't one handed out by this pool.
+     */
+    public synchronized int sharedKind(Physical physical) {
+        Integer kind = shared.get(physical);
+        return kind == null ? -1 : kind;
+    }
+
+    /**
+     * Reduces a packed float color to its top 4 bits per RGB channel, so colors that only differ by a slight random
+     * tweak land in the same bucket.
+     */
+    public static int colorBucket(float color) {
+        final int bits = NumberTools.floatToIntBits(color);
+        return (bits >>> 4 & 0xF) | (bits >>> 8 & 0xF0) | (bits >>> 12 & 0xF00);
+    }
+
     public Vegetable getVegetable(Character c, IRNG rng) {
         EnumOrderedSet<Vegetable> veggies = vegetablesByTerrain.get(c);
         if (veggies == null || veggies.isEmpty()) {
@@ -142,7 +142,7 @@ public class DataStarter {
         baseOpenDoor.interactableData = Maker.makeList(new Interactable("close door", false, false,
                 (actor, target, main) -> {
                     RecipeMixer.applyModification(target, closeDoor);
-                    main.map.contents[target.location.x][target.location.y].remove(target);
+                    main.map.remove(target.location.x, target.location.y, target);
                     main.map.contents[target.location.x][target.location.y].blockage = target;
                     main.calcFOV(actor.location.x, actor.location.y);
                     main.calcDijkstra();
@@ -152,7 +152,7 @@ public class DataStarter {
         baseClosedDoor.interactableData = Maker.makeList(new Interactable("open door", false, true,
                 (actor, target, main) -> {
                     RecipeMixer.applyModification(target, openDoor);
-                    main.map.contents[target.location.x][target.location.y].add(target);
+                    main.map.add(target.location.x, target.location.y, target);
                     main.map.contents[target.location.x][target.location.y].blockage = null;
                     main.calcFOV(actor.location.x, actor.location.y);
                     main.calcDijkstra();
@@ -650,6 +650,7 @@ public class RecipeMixer {
         physical.statEffects.addAll(modification.statEffectsAdditive);
 
         physical.statEffects.removeAll(modification.statEffectsSubtractive);
+        physical.changedStatEffects();
 
         if (modification.inventory != null) {
             physical.inventory = modification.inventory
@@ -1,6 +1,6 @@
 package squidpony.epigon.data.trait;
 
-import squidpony.epigon.game.Epigon;
+import squidpony.epigon.game.TurnEngine;
 import squidpony.epigon.data.Physical;
 
 /**
@@ -13,8 +13,8 @@ public interface Interaction {
     /**
      * @param actor the Physical doing the interaction, usually a creature
      * @param target the target of the interaction, which may be an object or creature
-     * @param main the main state of the {@link Epigon} program, allowing interactions significant flexibility
+     * @param main the {@link TurnEngine} running the game, with the current level, allowing interactions significant flexibility
      * @return any text to print, which may have markup that should be processed by {@link squidpony.Messaging} and {@link squidpony.squidgrid.gui.gdx.GDXMarkup}
      */
-    String interact(Physical actor, Physical target, Epigon main);
+    String interact(Physical actor, Physical target, TurnEngine main);
 }
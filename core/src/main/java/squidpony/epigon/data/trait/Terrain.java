@@ -2,6 +2,7 @@ package squidpony.epigon.data.trait;
 
 import squidpony.epigon.data.quality.Inclusion;
 import squidpony.epigon.data.quality.Stone;
+import squidpony.squidgrid.gui.gdx.SColor;
 import squidpony.squidmath.FastNoise;
 
 /**
@@ -15,10 +16,72 @@ public class Terrain {
     public float background;
     public FastNoise noise;
 
+    /**
+     * How many cells across and down an animated background goes before it repeats, and how many frames it loops
+     * through. A frame lasts 64 milliseconds, so the loop takes a little over 8 seconds.
+     */
+    public static final int ANIMATION_SIZE = 64, ANIMATION_FRAMES = 128;
+
+    /**
+     * For each frame that has been needed so far, the background color of every cell in one repeat, indexed by
+     * {@code (x & 63) << 6 | (y & 63)}. Terrain is shared between every tile of the same kind, so this is too.
+     */
+    private transient float[][] animation;
+
     public Stone stone;
     public Inclusion inclusion;
     public boolean extrusive;
     public boolean intrusive;
     public boolean metamorphic;
     public boolean sedimentary;
+
+    /**
+     * Gets the background color at the given cell and time in milliseconds, moving over time if this has noise. Colors
+     * are looked up in a table that repeats every {@link #ANIMATION_SIZE} cells and {@link #ANIMATION_FRAMES} frames;
+     * each frame of it is filled the first time it is needed, from noise that wraps around at the edges of the table, so
+     * the repeats don't show seams and the noise keeps the same contrast everywhere.
+     */
+    public float animatedBackground(int x, int y, long time) {
+        if (noise == null) {
+            return background;
+        }
+        if (animation == null) {
+            animation = new float[ANIMATION_FRAMES][];
+        }
+        int f = (int) (time >>> 6) & ANIMATION_FRAMES - 1;
+        float[] frame = animation[f];
+        if (frame == null) {
+            frame = animation[f] = buildFrame(f);
+        }
+        return frame[(x & ANIMATION_SIZE - 1) << 6 | (y & ANIMATION_SIZE - 1)];
+    }
+
+    /**
+     * Forgets the animation table, which must be done if {@link #noise} or {@link #background} change.
+     */
+    public void resetAnimation() {
+        animation = null;
+    }
+
+    private float[] buildFrame(int f) {
+        // x, y, and time each go around a circle as long as the distance the noise moved over one repeat before, when
+        // it was sampled at 5 times the cell position and at 1/128 of the time in milliseconds, so it looks the same up
+        // close but comes back to where it started at the edges of the table
+        final double radiusXY = ANIMATION_SIZE * 5.0 / (2.0 * Math.PI), radiusZ = ANIMATION_FRAMES * 0.5 / (2.0 * Math.PI),
+            turn = 2.0 * Math.PI / ANIMATION_SIZE, turnZ = 2.0 * Math.PI * f / ANIMATION_FRAMES;
+        final float zc = (float) (Math.cos(turnZ) * radiusZ), zs = (float) (Math.sin(turnZ) * radiusZ);
+        float[] cos = new float[ANIMATION_SIZE], sin = new float[ANIMATION_SIZE];
+        for (int i = 0; i < ANIMATION_SIZE; i++) {
+            cos[i] = (float) (Math.cos(i * turn) * radiusXY);
+            sin[i] = (float) (Math.sin(i * turn) * radiusXY);
+        }
+        float[] frame = new float[ANIMATION_SIZE * ANIMATION_SIZE];
+        for (int x = 0; x < ANIMATION_SIZE; x++) {
+            for (int y = 0; y < ANIMATION_SIZE; y++) {
+                float n = noise.getConfiguredNoise(cos[x], sin[x], cos[y], sin[y], zc, zs);
+                frame[x << 6 | y] = SColor.toEditedFloat(background, 0f, 0f, n * 0.8f, 0f);
+            }
+        }
+        return frame;
+    }
 }
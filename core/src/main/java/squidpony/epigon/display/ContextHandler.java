@@ -5,7 +5,11 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.NumberUtils;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Group;
 
@@ -16,6 +20,7 @@ import squidpony.squidgrid.gui.gdx.TextCellFactory;
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.EnumOrderedMap;
 import squidpony.squidmath.EnumOrderedSet;
+import squidpony.squidmath.GreasedRegion;
 
 import squidpony.epigon.game.Epigon;
 import squidpony.epigon.data.LiveValue;
@@ -77,6 +82,26 @@ public class ContextHandler {
     private EpiMap[] world;
     private TextCellFactory miniMapFont;
     private TextCellFactory miniMapSideFont;
+
+    /**
+     * The remembered part of the current level with one pixel per cell, drawn as one quad for the mini map. Only the
+     * cells around the player are brought up to date after vision changes, since nothing else can be seen or forgotten.
+     */
+    private Pixmap miniMapPixels;
+    private Texture miniMapTexture;
+    private boolean miniMapStale, miniMapAllStale;
+    private int lastMiniX = -1, lastMiniY = -1;
+
+    /**
+     * The side view's symbol and color for every x and level at each y, laid out as {@code x * world.length + z}, with
+     * ' ' where there is nothing to draw. A level's part of a slice is only filled when that y is shown and the level
+     * changed since, which {@link #sideChanges} tracks for each level.
+     */
+    private char[][] sideSymbols;
+    private float[][] sideColors;
+    private boolean[][] sideValid;
+    private EpiMap[] sideWorld, sideLevels;
+    private GreasedRegion[] sideChanges;
     private int frameDelay = 300;
     private long startTime = System.currentTimeMillis();
     private ContextMode contextMode = ContextMode.TILE_CONTENTS;
@@ -114,6 +139,15 @@ public class ContextHandler {
     }
 
     public void setMap(EpiMap map, EpiMap[] world) {
+        if (miniMapTexture != null) {
+            miniMapTexture.dispose();
+            miniMapTexture = null;
+        }
+        if (miniMapPixels != null) {
+            miniMapPixels.dispose();
+            miniMapPixels = null;
+        }
+        miniMapAllStale = true;
         if (miniMap != null) {
             group.removeActor(miniMap);
             miniMap.setVisible(false);
@@ -139,19 +173,13 @@ public class ContextHandler {
                     float widthInc = miniMapFont.actualCellWidth, heightInc = -miniMapFont.actualCellHeight;
                     int x, y;
                     yOff = yo + game.contextSize.cellHeight + mainMap.gridHeight * miniMapFont.actualCellHeight;
-                    RememberedTile memory;
-                    for (int i = 0; i < epiMap.width; i++) {
-                        for (int j = 0; j < epiMap.height; j++) {
-                            memory = epiMap.remembered[i][j];
-                            if (memory != null) {
-                                miniMapFont.draw(batch, '\u0000',
-                                    (epiMap.lighting.fovResult[i][j] > 0)
-                                        ? SColor.lerpFloatColors(memory.miniMapColor, SColor.FLOAT_WHITE, 0.25f)
-                                        : SColor.lerpFloatColors(memory.miniMapColor, SColor.FLOAT_BLACK, 0.2f),
-                                    xo + widthInc * i, yOff + heightInc * j);
-                            }
-                        }
-                    }
+                    updateMiniMapTexture();
+                    // the font's distance field shader would only use the alpha of these pixels
+                    ShaderProgram shader = batch.getShader();
+                    batch.setShader(null);
+                    batch.setPackedColor(SColor.FLOAT_WHITE);
+                    batch.draw(miniMapTexture, xo, yOff + heightInc * epiMap.height, widthInc * epiMap.width, -heightInc * epiMap.height);
+                    batch.setShader(shader);
                     //mainMap.getLayer(0).draw(batch, miniMapFont, xo, yOff, '\u0000');
                     ArrayList<TextCellFactory.Glyph> glyphs = mainMap.glyphs;
                     for (int i = 0; i < glyphs.size(); i++) {
@@ -194,13 +222,13 @@ public class ContextHandler {
                     int height = world[0].height;
                     y = (int) ((System.currentTimeMillis() - startTime) / frameDelay);
                     y %= height;
+                    prepareSideSlice(world, y);
+                    char[] symbols = sideSymbols[y];
+                    float[] colors = sideColors[y];
                     for (x = 0; x < width; x++) {
-                        for (int z = 0; z < sky; z++) {
-                            EpiTile tile = null;
-                            tile = world[z].contents[x][y];
-                            if (tile != null) {
-                                miniMapSideFont.draw(batch, tile.getSymbolUninhabited(), tile.getForegroundColor(),
-                                    xo + widthInc * x, yOff + heightInc * (z));
+                        for (int z = 0, i = x * sky; z < sky; z++, i++) {
+                            if (symbols[i] != ' ') {
+                                miniMapSideFont.draw(batch, symbols[i], colors[i], xo + widthInc * x, yOff + heightInc * z);
                             }
                         }
                     }
@@ -221,6 +249,138 @@ public class ContextHandler {
         }
     }
 
+    /**
+     * Notes that what the player can see or remembers may have changed, so the mini map is brought up to date the
+     * next time it is drawn.
+     */
+    public void visionChanged() {
+        miniMapStale = true;
+        if (config.debugConfig.debugActive && config.debugConfig.odinView) {
+            miniMapAllStale = true;
+        }
+    }
+
+    /**
+     * Puts the mini map colors of the cells that may have changed into the pixels and uploads them, if anything changed
+     * since the last frame. The first time on a level, or after the whole level was revealed, every cell is done;
+     * otherwise only the areas around where the player is now and was last time, which hold every cell that
+     * calculating vision can have changed.
+     */
+    private void updateMiniMapTexture() {
+        if (miniMapPixels == null) {
+            miniMapPixels = new Pixmap(epiMap.width, epiMap.height, Pixmap.Format.RGBA8888);
+            miniMapPixels.setBlending(Pixmap.Blending.None);
+            miniMapTexture = new Texture(miniMapPixels);
+            miniMapAllStale = true;
+        }
+        if (!miniMapStale && !miniMapAllStale) {
+            return;
+        }
+        if (miniMapAllStale || game.player == null || game.player.location == null || lastMiniX < 0) {
+            refreshMiniMap(0, 0, epiMap.width, epiMap.height);
+        } else {
+            refreshMiniMapAround(lastMiniX, lastMiniY);
+            refreshMiniMapAround(game.player.location.x, game.player.location.y);
+        }
+        if (game.player != null && game.player.location != null) {
+            lastMiniX = game.player.location.x;
+            lastMiniY = game.player.location.y;
+        }
+        miniMapTexture.draw(miniMapPixels, 0, 0);
+        miniMapStale = false;
+        miniMapAllStale = false;
+    }
+
+    private void refreshMiniMapAround(int x, int y) {
+        int halfWidth = (game.mapSize.gridWidth >>> 1) + 3, halfHeight = (game.mapSize.gridHeight >>> 1) + 3;
+        refreshMiniMap(Math.max(0, x - halfWidth), Math.max(0, y - halfHeight),
+            Math.min(epiMap.width, x + halfWidth), Math.min(epiMap.height, y + halfHeight));
+    }
+
+    private void refreshMiniMap(int startX, int startY, int endX, int endY) {
+        RememberedTile memory;
+        for (int i = startX; i < endX; i++) {
+            for (int j = startY; j < endY; j++) {
+                memory = epiMap.remembered[i][j];
+                if (memory == null) {
+                    miniMapPixels.drawPixel(i, j, 0);
+                } else {
+                    float color = (epiMap.lighting.fovResult[i][j] > 0)
+                        ? SColor.lerpFloatColors(memory.miniMapColor, SColor.FLOAT_WHITE, 0.25f)
+                        : SColor.lerpFloatColors(memory.miniMapColor, SColor.FLOAT_BLACK, 0.2f);
+                    // packed colors are ABGR, and reversing the bytes gives the RGBA the Pixmap wants
+                    miniMapPixels.drawPixel(i, j, Integer.reverseBytes(NumberUtils.floatToIntColor(color)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes sure the side view's slice at y is up to date for every level, filling in only the levels that changed,
+     * were built or were unloaded since it was last filled.
+     */
+    private void prepareSideSlice(EpiMap[] world, int y) {
+        final int depth = world.length, width = world[0].width, height = world[0].height;
+        if (sideWorld != world || sideSymbols.length != height || sideSymbols[0].length != width * depth) {
+            forgetSideSlices();
+            sideWorld = world;
+            sideSymbols = new char[height][];
+            sideColors = new float[height][];
+            sideValid = new boolean[depth][height];
+            sideLevels = new EpiMap[depth];
+            sideChanges = new GreasedRegion[depth];
+        }
+        if (sideSymbols[y] == null) {
+            sideSymbols[y] = new char[width * depth];
+            sideColors[y] = new float[width * depth];
+        }
+        char[] symbols = sideSymbols[y];
+        float[] colors = sideColors[y];
+        for (int z = 0; z < depth; z++) {
+            EpiMap level = world[z];
+            if (level != sideLevels[z]) { // built, unloaded or rebuilt
+                if (sideChanges[z] != null) {
+                    sideLevels[z].stopTracking(sideChanges[z]);
+                }
+                sideLevels[z] = level;
+                sideChanges[z] = level == null ? null : level.trackChanges();
+                Arrays.fill(sideValid[z], false);
+            } else if (level != null && !sideChanges[z].isEmpty()) {
+                sideChanges[z].clear();
+                Arrays.fill(sideValid[z], false);
+            }
+            if (sideValid[z][y]) {
+                continue;
+            }
+            for (int x = 0, i = z; x < width; x++, i += depth) {
+                EpiTile tile = level == null || x >= level.width || y >= level.height ? null : level.contents[x][y];
+                if (tile == null) { // not generated yet, or unloaded
+                    symbols[i] = ' ';
+                } else {
+                    symbols[i] = tile.getSymbolUninhabited();
+                    colors[i] = tile.getForegroundColor();
+                }
+            }
+            sideValid[z][y] = true;
+        }
+    }
+
+    private void forgetSideSlices() {
+        if (sideLevels != null) {
+            for (int z = 0; z < sideLevels.length; z++) {
+                if (sideChanges[z] != null) {
+                    sideLevels[z].stopTracking(sideChanges[z]);
+                }
+            }
+        }
+        sideWorld = null;
+        sideLevels = null;
+        sideChanges = null;
+        sideSymbols = null;
+        sideColors = null;
+        sideValid = null;
+    }
+
     private void clear() {
         layers.clear();
 
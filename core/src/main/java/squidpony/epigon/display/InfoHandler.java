@@ -68,7 +68,7 @@ public class InfoHandler {
     private SquidColorCenter colorCenter;
     private Physical player;
     private Physical target;
-    private OrderedMap<ConstantKey, Double> changes = new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance);
+    private final StatChanges changes = new StatChanges();
     private Epigon game;
 
     public Coord arrowLeft;
@@ -195,7 +195,7 @@ public class InfoHandler {
     }
 
     public void updateDisplay() {
-        updateDisplay(null, new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance));
+        updateDisplay(null, null);
         switch (infoMode) {
             case FULL_STATS:
                 infoFullStats(player);
@@ -220,20 +220,20 @@ public class InfoHandler {
      * values adjusted prior to calling this.
      *
      * @param physical
-     * @param changes  a Map of the changes to stats
+     * @param changes  the changes to stats, which are copied; may be null
      */
-    public void updateDisplay(Physical physical, OrderedMap<ConstantKey, Double> changes) {
-        this.changes.clear();// = new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance);
+    public void updateDisplay(Physical physical, StatChanges changes) {
+        this.changes.clear();
         switch (infoMode) {
             case FULL_STATS:
                 if (player == physical) {
-                    this.changes.putAll(changes);
+                    this.changes.set(changes);
                 }
                 infoFullStats(player);
                 break;
             case HEALTH_AND_ARMOR:
                 if (player == physical) {
-                    this.changes.putAll(changes);
+                    this.changes.set(changes);
                 }
                 infoHealthAndArmor(player);
                 break;
@@ -242,13 +242,13 @@ public class InfoHandler {
                 break;
             case TARGET_FULL_STATS:
                 if (target == physical) {
-                    this.changes.putAll(changes);
+                    this.changes.set(changes);
                 }
                 infoFullStats(target);
                 break;
             case TARGET_HEALTH_AND_ARMOR:
                 if (target == physical) {
-                    this.changes.putAll(changes);
+                    this.changes.set(changes);
                 }
                 infoHealthAndArmor(target);
                 break;
@@ -410,7 +410,7 @@ public class InfoHandler {
             LiveValue lv = physical.stats.get(s);
             if (lv != null) {
                 biggest = Math.max(biggest, Math.max(lv.base(), lv.actual()));
-                biggest = Math.max(biggest, lv.actual() + changes.getOrDefault(s, 0.0));
+                biggest = Math.max(biggest, lv.actual() + changes.get(s));
             }
         }
         int biggestLength = Integer.toString((int) Math.ceil(biggest)).length();
@@ -439,8 +439,8 @@ public class InfoHandler {
             blockText += Utilities.eighthBlocks[(int) Math.ceil(remainder)];
             put(widestStatSize + 2 + numberText.length() + 1, s + offset, blockText, color);
 
-            Double change = changes.get(stats[s]);
-            if (change != null && change != 0) {
+            double change = changes.get(stats[s]);
+            if (change != 0) {
                 double startValue = actual - change; // minus because looking for previous value
                 filling = startValue / biggest;
                 int priorBlocks = (int) Math.ceil(filling * blockValue);
@@ -1,12 +1,20 @@
 package squidpony.epigon.files;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.stream.Collectors;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonWriter;
@@ -46,24 +54,24 @@ public class FileManager {
      * @return
      */
     public String readFile(String fileName, String path) {
-        String localPath = "";
-        if (path != null && !path.isEmpty()) {
-            localPath = path + "/";
-        }
-        localPath += fileName;
-
-        Path foundPath = Paths.get(localPath);
-
+        Path foundPath = Paths.get(localPath(fileName, path));
+        String contents;
         try {
-            return Files.readAllLines(foundPath).stream().collect(Collectors.joining("\n"));
+            contents = new String(Files.readAllBytes(foundPath), StandardCharsets.UTF_8);
         } catch (IOException ex) {
-            System.out.println("Could not read path: " + localPath + " with Exception: " + ex.getLocalizedMessage());
+            System.out.println("Could not read path: " + foundPath + " with Exception: " + ex.getLocalizedMessage());
             return "";
         }
+        if (contents.indexOf('\r') >= 0) {
+            contents = contents.replace("\r\n", "\n").replace('\r', '\n');
+        }
+        // same as joining the lines back together, which drops the last line break
+        return contents.endsWith("\n") ? contents.substring(0, contents.length() - 1) : contents;
     }
 
     /**
-     * Writes the string directly into the given file.
+     * Writes the string directly into the given file, followed by a line break. The file is replaced all at once, so
+     * it never holds only part of the contents.
      *
      * IOExceptions are swallowed, use the return value to handle success and failure of saving.
      *
@@ -74,24 +82,171 @@ public class FileManager {
      * @return true if the file write operation was a success, false if it was not
      */
     public boolean writeFile(String fileName, String path, String contents) {
-        String localPath = "";
-        if (path != null && !path.isEmpty()) {
-            localPath = path + "/";
-        }
-        localPath += fileName;
-
-        Path foundPath = Paths.get(localPath);
         try {
-            Files.createDirectories(Paths.get(path));
-            Files.write(foundPath, Collections.singletonList(contents), StandardCharsets.UTF_8);
+            writeBuffers(fileName, path,
+                StandardCharsets.UTF_8.encode(contents), StandardCharsets.UTF_8.encode(System.lineSeparator()));
         } catch (IOException ex) {
-            System.out.println("Could not write path: " + localPath + "\nException: " + ex.getLocalizedMessage());
+            System.out.println("Could not write path: " + localPath(fileName, path) + "\nException: " + ex.getLocalizedMessage());
             return false;
         }
 
         return true;
     }
 
+    /**
+     * Reads the whole file in as bytes.
+     *
+     * @param fileName
+     * @param path
+     * @return the contents of the file
+     * @throws IOException if the file could not be read
+     */
+    public byte[] readBytes(String fileName, String path) throws IOException {
+        return Files.readAllBytes(Paths.get(localPath(fileName, path)));
+    }
+
+    /**
+     * Writes the bytes directly into the given file, replacing anything already there. The file is replaced all at
+     * once, so it never holds only part of the contents.
+     *
+     * @param fileName
+     * @param path
+     * @param contents
+     * @throws IOException if the file could not be written, in which case any old file is left as it was
+     */
+    public void writeBytes(String fileName, String path, byte[] contents) throws IOException {
+        writeBuffers(fileName, path, ByteBuffer.wrap(contents));
+    }
+
+    /**
+     * Maps the whole file into memory, read-only. The operating system pages the file in as the buffer is read, so
+     * large files don't need to be copied onto the heap first. The buffer stays valid after this returns.
+     *
+     * @param fileName
+     * @param path
+     * @return a buffer over the contents of the file
+     * @throws IOException if the file could not be read
+     */
+    public ByteBuffer mapFile(String fileName, String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(localPath(fileName, path)), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Opens the file for reading as a buffered stream, which the caller must close.
+     *
+     * @param fileName
+     * @param path
+     * @return a stream over the contents of the file
+     * @throws IOException if the file could not be opened, such as a {@link java.nio.file.NoSuchFileException} if
+     *                     there is no such file
+     */
+    public InputStream openFile(String fileName, String path) throws IOException {
+        Path foundPath = Paths.get(localPath(fileName, path));
+        return new BufferedInputStream(Channels.newInputStream(FileChannel.open(foundPath, StandardOpenOption.READ)), 1 << 16);
+    }
+
+    /**
+     * Writes the remaining contents of each buffer, in order, into the given file, replacing anything already there.
+     * The buffers are written straight to the file with no copies made, and the file is replaced all at once, so it
+     * never holds only part of the contents.
+     *
+     * @param fileName
+     * @param path
+     * @param contents
+     * @throws IOException if the file could not be written, in which case any old file is left as it was
+     */
+    public void writeBuffers(String fileName, String path, ByteBuffer... contents) throws IOException {
+        replaceFile(fileName, path, channel -> {
+            for (ByteBuffer buffer : contents) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes into the given file through a stream, replacing anything already there. The file is replaced all at once
+     * after the writer is done, so if writing fails partway, by an IOException or anything else the writer throws, the
+     * old file is left as it was and the exception is passed on.
+     *
+     * @param fileName
+     * @param path
+     * @param writer   writes the contents; it should not close the stream
+     * @throws IOException if the file could not be written
+     */
+    public void writeStream(String fileName, String path, StreamWriter writer) throws IOException {
+        replaceFile(fileName, path, channel -> {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            writer.write(out);
+            out.flush();
+        });
+    }
+
+    /**
+     * Writes the contents of a file into a stream, for {@link #writeStream(String, String, StreamWriter)}.
+     */
+    public interface StreamWriter {
+
+        void write(OutputStream out) throws IOException;
+    }
+
+    private interface ChannelWriter {
+
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Writes a temporary file next to the given one, then moves it over the given one. The temporary file is deleted
+     * whenever it wasn't moved, whatever the writer threw.
+     */
+    private void replaceFile(String fileName, String path, ChannelWriter writer) throws IOException {
+        Path foundPath = Paths.get(localPath(fileName, path)).toAbsolutePath();
+        Files.createDirectories(foundPath.getParent());
+        Path temp = Files.createTempFile(foundPath.getParent(), fileName, ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(channel);
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, foundPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, foundPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ex) {
+                    System.out.println("Could not delete path: " + temp + "\nException: " + ex.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the given file if it exists.
+     *
+     * @param fileName
+     * @param path
+     * @throws IOException if the file exists and could not be deleted
+     */
+    public void deleteFile(String fileName, String path) throws IOException {
+        Files.deleteIfExists(Paths.get(localPath(fileName, path)));
+    }
+
+    private static String localPath(String fileName, String path) {
+        if (path != null && !path.isEmpty()) {
+            return path + "/" + fileName;
+        }
+        return fileName;
+    }
+
     /**
      * A Json object with configurations set.
      *
@@ -0,0 +1,925 @@
+package squidpony.epigon.files;
+
+import squidpony.epigon.data.CalcStat;
+import squidpony.epigon.data.ChangeTable;
+import squidpony.epigon.data.Condition;
+import squidpony.epigon.data.ConditionBlueprint;
+import squidpony.epigon.data.LiveValue;
+import squidpony.epigon.data.Physical;
+import squidpony.epigon.data.Stat;
+import squidpony.epigon.data.VisualCondition;
+import squidpony.epigon.data.Weapon;
+import squidpony.epigon.data.WeightedTableWrapper;
+import squidpony.epigon.data.control.DataPool;
+import squidpony.epigon.data.control.DataStarter;
+import squidpony.epigon.data.control.RecipeMixer;
+import squidpony.epigon.data.quality.Element;
+import squidpony.epigon.data.quality.Stone;
+import squidpony.epigon.data.quality.Tree;
+import squidpony.epigon.data.quality.Vegetable;
+import squidpony.epigon.data.raw.RawCreature;
+import squidpony.epigon.mapping.EpiMap;
+import squidpony.epigon.mapping.EpiTile;
+import squidpony.epigon.mapping.LevelCache;
+import squidpony.epigon.util.ConstantKey;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.CrossHash;
+import squidpony.squidmath.IntVLA;
+import squidpony.squidmath.OrderedMap;
+import squidpony.squidmath.StatefulRNG;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes a whole game in a compact binary form.
+ *
+ * Nearly every tile in a world holds walls and floors shared from {@link DataPool}, so each level is written as columns
+ * of small indices into a palette of those shared objects, which compress to almost nothing. Each palette entry is
+ * described right after the first index that refers to it, so the whole save is written straight through the
+ * compressor in one pass, without being built up in memory first. Everything else is written
+ * as a short record of what it was made from (a blueprint, plant, creature or weapon) followed by its own state (name,
+ * look, stats and inventory), and is made again from that when loaded. Things that can't be traced back to what made
+ * them are loaded as plain objects with the same state.
+ *
+ * Levels that were never built aren't written at all, and are built as usual when they are first reached. Levels that
+ * were unloaded by a {@link LevelCache} are written as only what was kept of them, with the seed they are built again
+ * from, and are only built again when they are reached.
+ */
+public class SaveGame {
+
+    private static final int MAGIC = 0x45505356; // EPSV
+    private static final int VERSION = 3;
+
+    // what a record was made from
+    private static final int POOLED = 0, COPY = 1, BLUEPRINT = 2, VEGETABLE = 3, TREE = 4, CREATURE = 5, WEAPON = 6,
+        BASIC = 7;
+
+    // how much of a level was written
+    private static final int NOT_BUILT = 0, WHOLE = 1, KEPT = 2;
+
+    // values in a column of tiles; palette indices follow these
+    private static final int EMPTY = 0, RECORD = 1, PALETTE = 2;
+
+    // which parts of a LiveValue differ from a fresh one with the same base
+    private static final int MAX = 1, MIN = 2, ACTUAL = 4, DELTA = 8, INERTIA = 16, UNSTABLE = 32;
+
+    private static final Stat[] stats = Stat.values();
+    private static final Element[] elements = Element.values();
+
+    /**
+     * Every level of the loaded world; levels that hadn't been built when the game was saved are null.
+     */
+    public EpiMap[] world;
+
+    /**
+     * The index in {@link #world} of the level the player was on, and where they were on it.
+     */
+    public int depth;
+    public Coord location;
+
+    /**
+     * The index in {@link #world} where the underground levels start.
+     */
+    public int undergroundStart;
+
+    /**
+     * What was kept of each level that was unloaded when the game was saved, to be given to a {@link LevelCache}; those
+     * levels are null in {@link #world}.
+     */
+    public LevelCache.Stored[] stored;
+
+    /**
+     * The loaded player, with their stats and belongings.
+     */
+    public Physical player;
+
+    private final DataStarter dataStarter = DataPool.instance().dataStarter;
+    private final ArrayList<Physical> blueprints = new ArrayList<>(32);
+    private final OrderedMap<Physical, Integer> blueprintIndex = new OrderedMap<>(32, 0.5f, CrossHash.identityHasher);
+    private final ArrayList<Physical> palette = new ArrayList<>(64);
+    private final OrderedMap<Physical, Integer> paletteIndex = new OrderedMap<>(64, 0.5f, CrossHash.identityHasher);
+    /**
+     * How many palette entries have been described so far while writing.
+     */
+    private int described;
+    private Physical writingPlayer;
+    private Function<RawCreature, Physical> creatureMaker;
+    private StatefulRNG rng;
+
+    private SaveGame() {
+        // made in the same order every run, so these indices mean the same thing in any run
+        blueprints.addAll(Arrays.asList(dataStarter.doorBlueprint, dataStarter.upStairBlueprint,
+            dataStarter.downStairBlueprint, dataStarter.water, dataStarter.mud, dataStarter.grass,
+            dataStarter.shadedGrass, dataStarter.lava, dataStarter.torch, dataStarter.baseFood, dataStarter.rawMeat,
+            dataStarter.steak, dataStarter.money, dataStarter.nan, dataStarter.emptySpace,
+            dataStarter.hatRecipe.result.keyAt(0), dataStarter.shirtRecipe.result.keyAt(0),
+            dataStarter.pantsRecipe.result.keyAt(0), dataStarter.glovesRecipe.result.keyAt(0),
+            dataStarter.swordRecipe.result.keyAt(0)));
+        blueprints.removeIf(Objects::isNull);
+        for (int i = 0; i < blueprints.size(); i++) {
+            blueprintIndex.put(blueprints.get(i), i);
+        }
+    }
+
+    /**
+     * Writes the whole game.
+     *
+     * @param levelCount       how many levels are in the world
+     * @param levels           gets each level, or null for a level that hasn't been built
+     * @param undergroundStart the index of the first underground level
+     * @param depth            the index of the level the player is on
+     * @param player           the player, who should not be in any level's tiles
+     * @return the compressed save
+     */
+    public static byte[] write(int levelCount, IntFunction<EpiMap> levels, int undergroundStart, int depth, Physical player) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try {
+            write(bytes, levelCount, levels, null, undergroundStart, depth, player);
+        } catch (IOException ex) { // can't happen when writing to memory
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the whole game, compressed, into the given stream, which is left open.
+     *
+     * @param stream           where the save goes, such as a file from {@link FileManager#writeStream}
+     * @param levelCount       how many levels are in the world
+     * @param levels           gets each level, or null for a level that hasn't been built
+     * @param undergroundStart the index of the first underground level
+     * @param depth            the index of the level the player is on
+     * @param player           the player, who should not be in any level's tiles
+     * @throws IOException if the stream can't be written to
+     */
+    public static void write(OutputStream stream, int levelCount, IntFunction<EpiMap> levels, int undergroundStart, int depth, Physical player) throws IOException {
+        write(stream, levelCount, levels, null, undergroundStart, depth, player);
+    }
+
+    /**
+     * Writes the whole game, compressed, into the given stream, which is left open. Levels in memory are written whole,
+     * and levels the cache unloaded are written as what it kept of them, without building them again.
+     *
+     * @param stream where the save goes, such as a file from {@link FileManager#writeStream}
+     * @param levels the cache holding every level of the world
+     * @param depth  the index of the level the player is on
+     * @param player the player, who should not be in any level's tiles
+     * @throws IOException if the stream can't be written to
+     */
+    public static void write(OutputStream stream, LevelCache levels, int depth, Physical player) throws IOException {
+        write(stream, levels.size(), levels::resident, levels, levels.start(), depth, player);
+    }
+
+    private static void write(OutputStream stream, int levelCount, IntFunction<EpiMap> levels, LevelCache cache, int undergroundStart, int depth, Physical player) throws IOException {
+        SaveGame save = new SaveGame();
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream compressed = new DeflaterOutputStream(stream, deflater, 1 << 14);
+            DataOutputStream out = new DataOutputStream(compressed);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(levelCount);
+            out.writeInt(undergroundStart);
+            out.writeInt(depth);
+            out.writeInt(player.location.x);
+            out.writeInt(player.location.y);
+            save.writePlayer(player, out);
+            for (int i = 0; i < levelCount; i++) {
+                EpiMap map = levels.apply(i);
+                LevelCache.Stored kept = map == null && cache != null ? cache.stored(i) : null;
+                if (map != null) {
+                    out.writeByte(WHOLE);
+                    save.writeLevel(map, out);
+                } else if (kept != null) {
+                    out.writeByte(KEPT);
+                    save.writeKept(kept, cache.storedMemory(i), out);
+                } else {
+                    out.writeByte(NOT_BUILT);
+                }
+            }
+            out.flush();
+            compressed.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads a whole game written by {@link #write(int, IntFunction, int, int, Physical)}.
+     *
+     * @param bytes         the compressed save
+     * @param creatureMaker makes a new creature of the given kind, the same way a level is populated; what it carries,
+     *                      its conditions and what it drops are replaced by what was saved
+     * @return the loaded game
+     * @throws IOException if the save is damaged or was written by an incompatible version
+     */
+    public static SaveGame read(byte[] bytes, Function<RawCreature, Physical> creatureMaker) throws IOException {
+        return read(new ByteArrayInputStream(bytes), creatureMaker);
+    }
+
+    /**
+     * Reads a whole game written by {@link #write(OutputStream, int, IntFunction, int, int, Physical)} from the given
+     * stream, which is left open.
+     *
+     * @param stream        the compressed save, such as a file from {@link FileManager#openFile(String, String)}
+     * @param creatureMaker makes a new creature of the given kind, the same way a level is populated; what it carries,
+     *                      its conditions and what it drops are replaced by what was saved
+     * @return the loaded game
+     * @throws IOException if the save can't be read, is damaged, or was written by an incompatible version
+     */
+    public static SaveGame read(InputStream stream, Function<RawCreature, Physical> creatureMaker) throws IOException {
+        SaveGame save = new SaveGame();
+        save.creatureMaker = creatureMaker;
+        Inflater inflater = new Inflater();
+        DataInputStream in = new DataInputStream(new InflaterInputStream(stream, inflater, 1 << 14));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a save from this version of Epigon");
+            }
+            save.world = new EpiMap[in.readInt()];
+            save.stored = new LevelCache.Stored[save.world.length];
+            save.undergroundStart = in.readInt();
+            save.depth = in.readInt();
+            save.location = Coord.get(in.readInt(), in.readInt());
+            save.rng = new StatefulRNG(save.location.hashCode() + 31L * save.depth);
+            save.player = save.readPlayer(in);
+            for (int i = 0; i < save.world.length; i++) {
+                int kind = in.readByte();
+                if (kind == WHOLE) {
+                    save.world[i] = save.readLevel(new EpiMap(in.readInt(), in.readInt()), in);
+                } else if (kind == KEPT) {
+                    save.stored[i] = save.readKept(in);
+                } else if (kind != NOT_BUILT) {
+                    throw new IOException("Unknown level kind " + kind);
+                }
+            }
+        } catch (RuntimeException ex) { // indices that run off the end of tables, unknown enum ordinals, and so on
+            throw new IOException("Damaged save", ex);
+        } finally {
+            inflater.end();
+        }
+        return save;
+    }
+
+    /**
+     * Describes the palette entry at the given index, if this is the first time it was written; must be called right
+     * after writing any palette index. Indices are handed out in order, so a new one is always the next to describe.
+     */
+    private void describe(int index, DataOutputStream out) throws IOException {
+        if (index < described) {
+            return;
+        }
+        described++;
+        Physical p = palette.get(index);
+        int kind = DataPool.instance().sharedKind(p);
+        out.writeByte(kind);
+        if (kind == DataPool.TERRAIN) {
+            out.writeShort(blueprintIndex.get(p.parent));
+        } else {
+            out.writeByte(p.terrainData.stone.ordinal());
+            if (kind == DataPool.TERRAIN_FLOOR) {
+                out.writeChar(p.symbol);
+                out.writeFloat(p.color);
+            }
+        }
+    }
+
+    /**
+     * Gets the palette entry at an index that was just read, reading its description first if it is new.
+     */
+    private Physical paletteEntry(int index, DataInputStream in) throws IOException {
+        if (index < palette.size()) {
+            return palette.get(index);
+        }
+        if (index > palette.size()) {
+            throw new IOException("Palette entry " + index + " used before it was described");
+        }
+        DataPool pool = DataPool.instance();
+        Physical p;
+        int kind = in.readByte();
+        if (kind == DataPool.TERRAIN) {
+            p = pool.getTerrain(blueprints.get(in.readUnsignedShort()));
+        } else {
+            Stone stone = Stone.ALL[in.readUnsignedByte()];
+            switch (kind) {
+                case DataPool.WALL:
+                    p = pool.getWall(stone);
+                    break;
+                case DataPool.FLOOR:
+                    p = pool.getFloor(stone);
+                    break;
+                default:
+                    p = pool.getFloor(stone, in.readChar(), in.readFloat());
+                    break;
+            }
+        }
+        palette.add(p);
+        return p;
+    }
+
+    /**
+     * Gets the index in the palette for a shared Physical, adding it if needed, or -1 if it can't go in the palette.
+     */
+    private int paletteIndex(Physical p) {
+        Integer index = paletteIndex.get(p);
+        if (index != null) {
+            return index;
+        }
+        int kind = DataPool.instance().sharedKind(p);
+        if (kind < 0 || (kind == DataPool.TERRAIN ? !blueprintIndex.containsKey(p.parent)
+            : p.terrainData == null || p.terrainData.stone == null)) {
+            return -1;
+        }
+        paletteIndex.put(p, palette.size());
+        palette.add(p);
+        return palette.size() - 1;
+    }
+
+    private void writePlayer(Physical player, DataOutputStream out) throws IOException {
+        writingPlayer = player;
+        writeState(player, out);
+    }
+
+    private Physical readPlayer(DataInputStream in) throws IOException {
+        Physical player = RecipeMixer.buildPhysical(dataStarter.playerBlueprint);
+        player.visualCondition = new VisualCondition();
+        player.location = location;
+        readState(player, in);
+        return player;
+    }
+
+    /**
+     * Writes a level as columns: floors, then large things like walls and creatures, then how many small things each
+     * tile holds. Tiles with nothing unusual take up a single palette index per column.
+     */
+    private void writeLevel(EpiMap map, DataOutputStream out) throws IOException {
+        out.writeInt(map.width);
+        out.writeInt(map.height);
+        out.writeLong(map.chaos.getState());
+        out.writeBoolean(map.populated);
+        ArrayList<Physical> records = new ArrayList<>();
+        for (int x = 0; x < map.width; x++) {
+            for (int y = 0; y < map.height; y++) {
+                writeColumnEntry(map.contents[x][y].floor, records, out);
+            }
+        }
+        writeRecords(records, out);
+        for (int x = 0; x < map.width; x++) {
+            for (int y = 0; y < map.height; y++) {
+                Physical blockage = map.contents[x][y].blockage;
+                writeColumnEntry(blockage == writingPlayer ? null : blockage, records, out); // the player is written on their own
+            }
+        }
+        writeRecords(records, out);
+        for (int x = 0; x < map.width; x++) {
+            for (int y = 0; y < map.height; y++) {
+                out.writeShort(map.contents[x][y].contents.size());
+                records.addAll(map.contents[x][y].contents);
+            }
+        }
+        writeRecords(records, out);
+        LevelCache.writeRegion(map.upStairPositions, out);
+        LevelCache.writeRegion(map.downStairPositions, out);
+        LevelCache.writeMemory(map, out);
+    }
+
+    private EpiMap readLevel(EpiMap map, DataInputStream in) throws IOException {
+        long chaos = in.readLong();
+        map.chaos.setState(chaos);
+        map.populated = in.readBoolean();
+        int[] column = new int[map.width * map.height];
+        EpiTile[] tiles = new EpiTile[column.length];
+        // the records for a column come after the whole column, in the same order as the tiles that refer to them
+        readEntries(column, in);
+        for (int i = 0; i < column.length; i++) {
+            // tints aren't saved, to keep saves small; they are made from the level's seed, so they stay the same from
+            // one load to the next
+            tiles[i] = map.contents[i / map.height][i % map.height] =
+                new EpiTile(columnEntry(column[i], in), chaos + i * 0x9E3779B97F4A7C15L);
+        }
+        readEntries(column, in);
+        for (int i = 0; i < column.length; i++) {
+            tiles[i].blockage = columnEntry(column[i], in);
+        }
+        readColumn(column, in);
+        for (int i = 0; i < column.length; i++) {
+            for (int j = 0; j < column[i]; j++) {
+                tiles[i].contents.add(readRecord(in));
+            }
+        }
+        for (int i = 0; i < column.length; i++) {
+            Physical blockage = tiles[i].blockage;
+            if (blockage != null && blockage.creatureData != null) {
+                blockage.location = Coord.get(i / map.height, i % map.height);
+                map.creatures.put(blockage.location, blockage);
+            }
+        }
+        LevelCache.readRegion(map.upStairPositions, in);
+        LevelCache.readRegion(map.downStairPositions, in);
+        LevelCache.readMemory(map, in);
+        return map;
+    }
+
+    /**
+     * Writes what a {@link LevelCache} kept of an unloaded level: its seed and state, each changed tile on its own, the
+     * creatures living there, and the player's memory of it just as the cache holds it.
+     */
+    private void writeKept(LevelCache.Stored kept, ByteBuffer memory, DataOutputStream out) throws IOException {
+        out.writeLong(kept.seed);
+        out.writeLong(kept.chaos);
+        out.writeBoolean(kept.populated);
+        ArrayList<Physical> records = new ArrayList<>();
+        out.writeInt(kept.tiles.size());
+        for (int i = 0; i < kept.tiles.size(); i++) {
+            Coord c = kept.tiles.keyAt(i);
+            EpiTile tile = kept.tiles.getAt(i);
+            out.writeShort(c.x);
+            out.writeShort(c.y);
+            writeColumnEntry(tile.floor, records, out);
+            writeRecords(records, out);
+            writeColumnEntry(tile.blockage, records, out);
+            writeRecords(records, out);
+            out.writeShort(tile.contents.size());
+            for (Physical p : tile.contents) {
+                writeRecord(p, out);
+            }
+        }
+        out.writeInt(kept.creatures.size());
+        for (int i = 0; i < kept.creatures.size(); i++) {
+            Coord c = kept.creatures.keyAt(i);
+            Physical creature = kept.creatures.getAt(i);
+            EpiTile tile = kept.tiles.get(c);
+            out.writeShort(c.x);
+            out.writeShort(c.y);
+            // nearly always the creature is the blockage of a changed tile, and is only written there
+            boolean inTile = tile != null && tile.blockage == creature;
+            out.writeBoolean(inTile);
+            if (!inTile) {
+                writeRecord(creature, out);
+            }
+        }
+        if (memory == null) {
+            out.writeInt(-1);
+        } else {
+            memory = memory.duplicate();
+            out.writeInt(memory.remaining());
+            out.flush();
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (memory.hasRemaining()) {
+                channel.write(memory);
+            }
+        }
+    }
+
+    private LevelCache.Stored readKept(DataInputStream in) throws IOException {
+        LevelCache.Stored kept = new LevelCache.Stored();
+        kept.seed = in.readLong();
+        kept.chaos = in.readLong();
+        kept.populated = in.readBoolean();
+        for (int i = 0, n = in.readInt(); i < n; i++) {
+            Coord c = Coord.get(in.readUnsignedShort(), in.readUnsignedShort());
+            // only what the tile holds is used; the tile built again in its place keeps its own look
+            EpiTile tile = new EpiTile();
+            tile.floor = columnEntry(in.readUnsignedShort(), in);
+            tile.blockage = columnEntry(in.readUnsignedShort(), in);
+            for (int j = 0, count = in.readUnsignedShort(); j < count; j++) {
+                tile.contents.add(readRecord(in));
+            }
+            kept.tiles.put(c, tile);
+        }
+        for (int i = 0, n = in.readInt(); i < n; i++) {
+            Coord c = Coord.get(in.readUnsignedShort(), in.readUnsignedShort());
+            Physical creature = in.readBoolean() ? kept.tiles.get(c).blockage : readRecord(in);
+            creature.location = c;
+            kept.creatures.put(c, creature);
+        }
+        int memoryLength = in.readInt();
+        if (memoryLength >= 0) {
+            kept.memoryBytes = new byte[memoryLength];
+            in.readFully(kept.memoryBytes);
+        }
+        return kept;
+    }
+
+    private void writeColumnEntry(Physical p, ArrayList<Physical> records, DataOutputStream out) throws IOException {
+        if (p == null) {
+            out.writeShort(EMPTY);
+            return;
+        }
+        int index = paletteIndex(p);
+        if (index < 0) {
+            out.writeShort(RECORD);
+            records.add(p);
+        } else {
+            out.writeShort(index + PALETTE);
+            describe(index, out);
+        }
+    }
+
+    private void writeRecords(ArrayList<Physical> records, DataOutputStream out) throws IOException {
+        for (Physical p : records) {
+            writeRecord(p, out);
+        }
+        records.clear();
+    }
+
+    private static void readColumn(int[] column, DataInputStream in) throws IOException {
+        for (int i = 0; i < column.length; i++) {
+            column[i] = in.readUnsignedShort();
+        }
+    }
+
+    /**
+     * Reads a column written by {@link #writeColumnEntry(Physical, ArrayList, DataOutputStream)}, along with the
+     * description of each palette entry it uses for the first time.
+     */
+    private void readEntries(int[] column, DataInputStream in) throws IOException {
+        for (int i = 0; i < column.length; i++) {
+            if ((column[i] = in.readUnsignedShort()) >= PALETTE) {
+                paletteEntry(column[i] - PALETTE, in);
+            }
+        }
+    }
+
+    private Physical columnEntry(int entry, DataInputStream in) throws IOException {
+        return entry == EMPTY ? null : entry == RECORD ? readRecord(in) : paletteEntry(entry - PALETTE, in);
+    }
+
+    private void writeRecord(Physical p, DataOutputStream out) throws IOException {
+        int index = paletteIndex(p);
+        if (index >= 0) {
+            out.writeByte(POOLED);
+            out.writeShort(index);
+            describe(index, out);
+            return;
+        }
+        RawCreature raw;
+        Integer blueprint;
+        Vegetable vegetable;
+        Tree tree;
+        if (p.creatureData != null && (raw = creatureNamed(p.name)) != null) {
+            out.writeByte(CREATURE);
+            out.writeUTF(raw.name);
+        } else if (p.weaponData != null && p.weaponData.rawWeapon != null
+            && Weapon.getWeapons().containsKey(p.weaponData.rawWeapon.name)) {
+            out.writeByte(WEAPON);
+            out.writeUTF(p.weaponData.rawWeapon.name);
+        } else if ((blueprint = blueprintIndex.get(p.parent)) != null) {
+            out.writeByte(BLUEPRINT);
+            out.writeShort(blueprint);
+        } else if (p.parent != null && (index = paletteIndex(p.parent)) >= 0) {
+            out.writeByte(COPY);
+            out.writeShort(index);
+            describe(index, out);
+        } else if ((vegetable = vegetableNamed(p.name)) != null) {
+            out.writeByte(VEGETABLE);
+            out.writeShort(vegetable.ordinal());
+        } else if ((tree = treeNamed(p.name)) != null) {
+            out.writeByte(TREE);
+            out.writeShort(tree.ordinal());
+        } else {
+            out.writeByte(BASIC);
+        }
+        writeState(p, out);
+    }
+
+    private Physical readRecord(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        Physical p;
+        switch (kind) {
+            case POOLED:
+                return paletteEntry(in.readUnsignedShort(), in);
+            case CREATURE:
+                p = creatureMaker.apply(creatureNamed(in.readUTF()));
+                break;
+            case WEAPON:
+                p = RecipeMixer.buildWeapon(Weapon.getWeapons().get(in.readUTF()).copy(), rng);
+                break;
+            case BLUEPRINT:
+                Physical blueprint = blueprints.get(in.readUnsignedShort());
+                p = RecipeMixer.buildPhysical(blueprint);
+                break;
+            case COPY:
+                p = RecipeMixer.buildPhysical(paletteEntry(in.readUnsignedShort(), in));
+                break;
+            case VEGETABLE:
+                p = RecipeMixer.buildVegetable(Vegetable.ALL[in.readUnsignedShort()]);
+                break;
+            case TREE:
+                p = RecipeMixer.buildTree(Tree.ALL[in.readUnsignedShort()]);
+                break;
+            case BASIC:
+                p = new Physical();
+                break;
+            default:
+                throw new IOException("Unknown record kind " + kind);
+        }
+        readState(p, in);
+        if (p.parent == dataStarter.doorBlueprint) { // brings back the right way to interact with it
+            dataStarter.setDoorOpen(p, p.symbol == '/');
+        }
+        return p;
+    }
+
+    /**
+     * Writes what can change about a Physical after it is made: its name and look, whether it blocks, its stats, and
+     * what it carries. A creature also has what it has equipped, its conditions and their effects, what it drops and
+     * its random state written, with {@link #writeCreature(Physical, DataOutputStream)}.
+     */
+    private void writeState(Physical p, DataOutputStream out) throws IOException {
+        out.writeUTF(p.name);
+        out.writeChar(p.symbol);
+        out.writeFloat(p.color);
+        out.writeBoolean(p.blocking);
+        out.writeBoolean(p.attached);
+        int count = 0;
+        for (int i = 0; i < p.stats.size(); i++) {
+            if (p.stats.keyAt(i) instanceof Stat || p.stats.keyAt(i) instanceof CalcStat) {
+                count++;
+            }
+        }
+        out.writeShort(count);
+        for (int i = 0; i < p.stats.size(); i++) {
+            if (p.stats.keyAt(i) instanceof Stat || p.stats.keyAt(i) instanceof CalcStat) {
+                writeStat(p.stats.keyAt(i), p.stats.getAt(i), out);
+            }
+        }
+        if (p.creatureData == null) {
+            out.writeShort(p.inventory.size());
+            for (Physical item : p.inventory) {
+                writeRecord(item, out);
+            }
+        } else {
+            writeCreature(p, out);
+        }
+    }
+
+    private void readState(Physical p, DataInputStream in) throws IOException {
+        p.name = in.readUTF();
+        p.symbol = in.readChar();
+        p.color = in.readFloat();
+        p.blocking = in.readBoolean();
+        p.attached = in.readBoolean();
+        p.stats.clear();
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            readStat(p, in);
+        }
+        if (p.creatureData == null) {
+            p.inventory.clear();
+            for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+                p.inventory.add(readRecord(in));
+            }
+        } else {
+            readCreature(p, in);
+        }
+    }
+
+    /**
+     * Writes what a creature carries and has equipped, its conditions, its stat effects in order, what it drops, and
+     * its random state. Stats were already written with their conditions' changes held, so conditions are put back
+     * without holding them again. Drops that are also belongings are written as which belonging they are.
+     */
+    private void writeCreature(Physical p, DataOutputStream out) throws IOException {
+        ArrayList<Physical> belongings = new ArrayList<>(p.inventory);
+        out.writeShort(p.inventory.size());
+        for (Physical item : p.inventory) {
+            writeRecord(item, out);
+        }
+        out.writeShort(p.creatureData.equippedDistinct.size());
+        for (Physical item : p.creatureData.equippedDistinct) {
+            writeRecord(item, out);
+            belongings.add(item);
+        }
+
+        ArrayList<Condition> conditions = new ArrayList<>(p.conditions.size());
+        for (Condition c : p.conditions) {
+            if (conditionIndex(c.parent) >= 0) {
+                conditions.add(c);
+            }
+        }
+        out.writeShort(conditions.size());
+        for (Condition c : conditions) {
+            out.writeShort(conditionIndex(c.parent));
+            out.writeByte(c.overrideElement == null ? 0 : c.overrideElement.ordinal() + 1);
+            out.writeInt(c.currentTick);
+        }
+        out.writeShort(p.statEffects.size());
+        for (int i = 0; i < p.statEffects.size(); i++) {
+            ChangeTable ct = p.statEffects.getAt(i);
+            int from = 0;
+            for (int j = 0; j < conditions.size() && from == 0; j++) {
+                if (conditions.get(j).parent.changes == ct) {
+                    from = j + 1;
+                }
+            }
+            out.writeShort(from);
+            if (from == 0) {
+                writeChangeTable(ct, out);
+            }
+        }
+
+        out.writeShort(p.physicalDrops.size());
+        for (WeightedTableWrapper<Physical> drops : p.physicalDrops) {
+            out.writeLong(drops.chaos);
+            out.writeShort(drops.items.size());
+            for (int i = 0; i < drops.items.size(); i++) {
+                Physical item = drops.items.get(i);
+                int belonging = 0;
+                for (int j = 0; j < belongings.size() && belonging == 0; j++) {
+                    if (belongings.get(j) == item) {
+                        belonging = j + 1;
+                    }
+                }
+                out.writeShort(belonging);
+                if (belonging == 0) {
+                    writeRecord(item, out);
+                }
+                out.writeDouble(drops.originalWeights[i]);
+                out.writeInt(drops.minAmounts.get(i));
+                out.writeInt(drops.maxAmounts.get(i));
+            }
+        }
+        out.writeChar(p.overlaySymbol);
+        out.writeFloat(p.overlayColor);
+        out.writeLong(p.getState());
+    }
+
+    private void readCreature(Physical p, DataInputStream in) throws IOException {
+        // whatever the creature was made with is replaced by what was saved
+        for (Physical item : new ArrayList<>(p.creatureData.equippedDistinct)) {
+            p.unequip(item);
+        }
+        p.creatureData.equippedDistinct.clear();
+        p.creatureData.equippedBySlot.clear();
+        p.inventory.clear();
+        p.conditions.clear();
+        p.statEffects.clear();
+        p.physicalDrops = new ArrayList<>(); // made creatures may share their drops with their blueprint
+
+        ArrayList<Physical> belongings = new ArrayList<>();
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            Physical item = readRecord(in);
+            p.inventory.add(item);
+            belongings.add(item);
+        }
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            Physical item = readRecord(in);
+            belongings.add(item);
+            p.inventory.add(item);
+            p.equipItem(item);
+        }
+
+        ArrayList<Condition> conditions = new ArrayList<>();
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            ConditionBlueprint blueprint = ConditionBlueprint.CONDITIONS.getAt(in.readUnsignedShort());
+            int element = in.readUnsignedByte();
+            conditions.add(Condition.restore(blueprint, p, element == 0 ? null : elements[element - 1], in.readInt()));
+        }
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            int from = in.readUnsignedShort();
+            p.statEffects.add(from == 0 ? readChangeTable(in) : conditions.get(from - 1).parent.changes);
+        }
+        p.changedStatEffects();
+
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            long chaos = in.readLong();
+            int count = in.readUnsignedShort();
+            ArrayList<Physical> items = new ArrayList<>(count);
+            double[] weights = new double[count];
+            IntVLA mins = new IntVLA(count), maxes = new IntVLA(count);
+            for (int j = 0; j < count; j++) {
+                int belonging = in.readUnsignedShort();
+                items.add(belonging == 0 ? readRecord(in) : belongings.get(belonging - 1));
+                weights[j] = in.readDouble();
+                mins.add(in.readInt());
+                maxes.add(in.readInt());
+            }
+            p.physicalDrops.add(new WeightedTableWrapper<>(chaos, items, weights, mins, maxes));
+        }
+        p.overlaySymbol = in.readChar();
+        p.overlayColor = in.readFloat();
+        p.setState(in.readLong()); // last, since equipping can take random numbers
+    }
+
+    private static int conditionIndex(ConditionBlueprint blueprint) {
+        for (int i = 0; i < ConditionBlueprint.CONDITIONS.size(); i++) {
+            if (ConditionBlueprint.CONDITIONS.getAt(i) == blueprint) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the changes in a ChangeTable to stats, then the symbols of its changes that aren't tied to a stat.
+     */
+    private static void writeChangeTable(ChangeTable ct, DataOutputStream out) throws IOException {
+        int count = 0;
+        for (int i = 0; i < ct.indexer.size(); i++) {
+            if (ct.indexer.keyAt(i) instanceof Stat || ct.indexer.keyAt(i) instanceof CalcStat) {
+                count++;
+            }
+        }
+        out.writeShort(count);
+        for (int i = 0; i < ct.indexer.size(); i++) {
+            ConstantKey key = ct.indexer.keyAt(i);
+            if (key instanceof Stat || key instanceof CalcStat) {
+                out.writeBoolean(key instanceof CalcStat);
+                out.writeByte(((Enum<?>) key).ordinal());
+                out.writeInt(ct.changeSymbols.get(i));
+                out.writeFloat(ct.values.get(i));
+            }
+        }
+        out.writeShort(ct.unrelatedSymbols.size);
+        for (int i = 0; i < ct.unrelatedSymbols.size; i++) {
+            out.writeInt(ct.unrelatedSymbols.get(i));
+        }
+    }
+
+    private static ChangeTable readChangeTable(DataInputStream in) throws IOException {
+        ChangeTable ct = new ChangeTable();
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            ConstantKey key = in.readBoolean() ? CalcStat.all[in.readUnsignedByte()] : stats[in.readUnsignedByte()];
+            ct.put(key, in.readInt(), in.readFloat());
+        }
+        for (int i = 0, n = in.readUnsignedShort(); i < n; i++) {
+            ct.put(null, in.readInt(), 0.0);
+        }
+        return ct;
+    }
+
+    /**
+     * Writes one stat as its key, its base, and only the other values that differ from a stat freshly set to that base.
+     */
+    private static void writeStat(ConstantKey key, LiveValue lv, DataOutputStream out) throws IOException {
+        out.writeBoolean(key instanceof CalcStat);
+        out.writeByte(((Enum<?>) key).ordinal());
+        int flags = (lv.max() != lv.base() ? MAX : 0) | (lv.min() != 0.0 ? MIN : 0) | (lv.actual() != lv.base() ? ACTUAL : 0)
+            | (lv.delta() != 0.0 ? DELTA : 0) | (lv.inertia() != 0.0 ? INERTIA : 0) | (lv.stable() ? 0 : UNSTABLE);
+        out.writeByte(flags);
+        out.writeDouble(lv.base());
+        if ((flags & MAX) != 0) out.writeDouble(lv.max());
+        if ((flags & MIN) != 0) out.writeDouble(lv.min());
+        if ((flags & ACTUAL) != 0) out.writeDouble(lv.actual());
+        if ((flags & DELTA) != 0) out.writeDouble(lv.delta());
+        if ((flags & INERTIA) != 0) out.writeDouble(lv.inertia());
+    }
+
+    private static void readStat(Physical p, DataInputStream in) throws IOException {
+        ConstantKey key = in.readBoolean() ? CalcStat.all[in.readUnsignedByte()] : stats[in.readUnsignedByte()];
+        int flags = in.readUnsignedByte();
+        LiveValue lv = new LiveValue(in.readDouble());
+        if ((flags & MAX) != 0) lv.max(in.readDouble());
+        if ((flags & MIN) != 0) lv.min(in.readDouble());
+        if ((flags & ACTUAL) != 0) lv.actual(in.readDouble());
+        if ((flags & DELTA) != 0) lv.delta(in.readDouble());
+        if ((flags & INERTIA) != 0) lv.inertia(in.readDouble());
+        lv.stable((flags & UNSTABLE) == 0);
+        p.stats.put(key, lv);
+    }
+
+    private static RawCreature creatureNamed(String name) {
+        for (RawCreature raw : RawCreature.ENTRIES) {
+            if (raw.name.equals(name)) {
+                return raw;
+            }
+        }
+        return null;
+    }
+
+    private static Vegetable vegetableNamed(String name) {
+        for (Vegetable vegetable : Vegetable.ALL) {
+            if (vegetable.prettyName().equals(name)) {
+                return vegetable;
+            }
+        }
+        return null;
+    }
+
+    private static Tree treeNamed(String name) {
+        for (Tree tree : Tree.ALL) {
+            if (tree.prettyName().equals(name)) {
+                return tree;
+            }
+        }
+        return null;
+    }
+}
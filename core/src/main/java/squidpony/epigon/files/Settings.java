@@ -21,6 +21,12 @@ public class Settings { // TODO - split Crawl and Dive into separate configs
     public int worldHeight = 160;
     public int worldDepth = 10;
 
+    public boolean flyweightTerrain = true; // share one floor between all tiles that look the same
+    public boolean lazyWorld = false; // only build underground levels when they are first reached
+    public int residentLevels = 4; // with lazyWorld, underground levels kept in memory (0 for all); others are unloaded and rebuilt when reached
+    public int dormantTickRate = 10; // creatures far from the player only have their conditions updated this often
+    public int dormantCatchUp = 30; // most turns a far-off creature makes up for at once; the rest are skipped
+
     public int diveWorldDepth = 40 + MapConstants.DIVE_HEADER.length; // only applies during Dive mode
 
     // In-flight values that shouldn't be saved to settings file
@@ -1,5 +1,8 @@
 package squidpony.epigon.game;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 import java.util.Arrays;
 import java.util.stream.Stream;
 
@@ -14,14 +17,10 @@ import com.badlogic.gdx.utils.viewport.Viewport;
 
 import squidpony.ArrayTools;
 import squidpony.Messaging;
-import squidpony.squidai.DijkstraMap;
-import squidpony.squidgrid.LOS;
-import squidpony.squidgrid.Measurement;
 import squidpony.squidgrid.gui.gdx.*;
 import squidpony.squidgrid.gui.gdx.SquidInput.KeyHandler;
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.GreasedRegion;
-import squidpony.squidmath.StatefulRNG;
 
 import squidpony.epigon.data.Physical;
 import squidpony.epigon.data.VisualCondition;
@@ -32,12 +31,15 @@ import squidpony.epigon.data.quality.Element;
 import squidpony.epigon.data.raw.RawCreature;
 import squidpony.epigon.display.FxHandler;
 import squidpony.epigon.files.Config;
+import squidpony.epigon.files.FileManager;
+import squidpony.epigon.files.SaveGame;
 import squidpony.epigon.input.key.*;
 import squidpony.epigon.input.mouse.EquipmentMouseHandler;
 import squidpony.epigon.input.mouse.HelpMouseHandler;
 import squidpony.epigon.input.mouse.MapMouseHandler;
 import squidpony.epigon.mapping.EpiMap;
 import squidpony.epigon.mapping.EpiTile;
+import squidpony.epigon.mapping.LevelCache;
 import squidpony.epigon.mapping.RememberedTile;
 import squidpony.epigon.util.Utilities;
 
@@ -57,8 +59,40 @@ public class Crawl extends Epigon {
     private Stage mapStage, mapOverlayStage;
     private Viewport mapViewport, mapOverlayViewport;
 
+    /**
+     * Cells whose remembered glyph is already on the map layer and doesn't need to be put there again each frame.
+     */
+    private GreasedRegion drawnMemory;
+
+    /**
+     * The index in {@link #world} of the first level made by {@link #worldGenerator}, below the castle levels.
+     */
+    private int undergroundStart;
+
+    /**
+     * Decides which underground levels stay in memory, unloading the ones the player hasn't been to recently.
+     */
+    private LevelCache levels;
+
+    private static final String savePath = "Save";
+    private static final String saveFilename = "epigon.sav";
+
     private static final Radiance[] softWhiteChain = Radiance.makeChain(8, 1.2f, SColor.FLOAT_WHITE, 0.4f);
 
+    /**
+     * How many milliseconds flickering or strobing lights wait between being redrawn when nothing else changed.
+     */
+    public int lightTickMillis = 50;
+
+    /**
+     * The map layer's backgrounds as they were right after colored lighting was last drawn, before anything was put over
+     * them, so frames where the lighting didn't change can start from a copy.
+     */
+    private float[][] litBackgrounds;
+    private boolean lightingStale = true, animatedLights;
+    private int litCursorHash;
+    private long litMillis;
+
     public Crawl(Config config) {
         super(config);
     }
@@ -234,12 +268,15 @@ public class Crawl extends Epigon {
         float glyphX;
         float glyphY;
         updateVisionFilter(1.05f, 1.4f, 1.4f, 1.05f, 1.4f, 1.4f);
+        float delta = Gdx.graphics.getDeltaTime();
         for (int i = 0; i < sLayers.glyphs.size(); i++) {
             TextCellFactory.Glyph glyph = sLayers.glyphs.get(i);
             if (glyph == null) { // no glyph to draw
                 continue;
             }
-            glyph.act(Gdx.graphics.getDeltaTime());
+            if (glyph.hasActions()) { // only glyphs in the middle of an animation have anything to do
+                glyph.act(delta);
+            }
             if (!glyph.isVisible()) { // can't see the glyph
                 continue;
             }
@@ -276,24 +313,21 @@ public class Crawl extends Epigon {
         message("Generating crawl.");
         //world = worldGenerator.buildWorld(worldWidth, worldHeight, 8, handBuilt);
         int aboveGround = 7;
-        EpiMap[] underground = worldGenerator.buildWorld(config.settings.worldWidth, config.settings.worldHeight, config.settings.worldDepth);
+        EpiMap[] underground = config.settings.lazyWorld
+            ? worldGenerator.buildLazyWorld(config.settings.worldWidth, config.settings.worldHeight, config.settings.worldDepth)
+            : worldGenerator.buildWorld(config.settings.worldWidth, config.settings.worldHeight, config.settings.worldDepth);
         EpiMap[] castle = castleGenerator.buildCastle(config.settings.worldWidth, config.settings.worldHeight, aboveGround);
+        undergroundStart = castle.length;
         world = Stream.of(castle, underground).flatMap(Stream::of).toArray(EpiMap[]::new);
+        levels = new LevelCache(worldGenerator, world, undergroundStart, residentLevels());
         depth = aboveGround + 1; // higher is deeper; aboveGround is surface-level
 //        depth = 0;
 //        world = underground;
-        map = world[depth];
+        map = level(depth);
         fxHandler = new FxHandler(mapSLayers, 3, colorCenter, map.lighting.fovResult);
         fxHandlerPassive = new FxHandler(passiveSLayers, 0, colorCenter, map.lighting.fovResult);
         floors = new GreasedRegion(map.width, map.height);
-
-        simple = new char[map.width][map.height];
-
-        StatefulRNG dijkstraRNG = new StatefulRNG();// random seed, player won't make deterministic choices
-        toPlayerDijkstra = new DijkstraMap(simple, Measurement.EUCLIDEAN, dijkstraRNG);
-        monsterDijkstra = new DijkstraMap(simple, Measurement.EUCLIDEAN, dijkstraRNG); // shared RNG
-        los = new LOS(LOS.BRESENHAM);
-        blockage = new GreasedRegion(map.width, map.height);
+        drawnMemory = new GreasedRegion(map.width, map.height);
         player.location = Coord.get(0, 0);
         changeLevel(depth);
 
@@ -304,31 +338,28 @@ public class Crawl extends Epigon {
     }
 
     /**
-     * Draws the map, applies any highlighting for the path to the cursor, and then draws the player.
+     * Draws the map, applies any highlighting for the path to the cursor, and then draws the player. Only the cells in
+     * the window around the player are drawn, since the camera follows the player and nothing else can be seen.
      */
     public void putCrawlMap() {
-        ArrayTools.fill(mapSLayers.backgrounds, map.lighting.backgroundColor);
-        map.lighting.update();
-        if (!showingMenu) {
-            for (int i = 0; i < toCursor.size(); i++) {
-                map.lighting.updateUI(toCursor.get(i), softWhiteChain[i * 3 & 7]);
-            }
-        }
-        map.lighting.draw(mapSLayers);
         Physical creature;
-        for (int x = 0; x < map.width; x++) {
-            for (int y = 0; y < map.height; y++) {
+        // one extra cell on each side covers the camera lagging behind while the player slides
+        int startX = Math.max(0, player.location.x - 2 - (mapSize.gridWidth >>> 1)),
+            startY = Math.max(0, player.location.y - 2 - (mapSize.gridHeight >>> 1)),
+            endX = Math.min(map.width, player.location.x + 3 + (mapSize.gridWidth >>> 1)),
+            endY = Math.min(map.height, player.location.y + 3 + (mapSize.gridHeight >>> 1));
+        prepareBackgrounds(startX, startY, endX, endY);
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
                 double sight = map.lighting.fovResult[x][y];
                 if (sight > 0.0) {
                     EpiTile tile = map.contents[x][y];
+                    drawnMemory.remove(x, y);
                     mapSLayers.clear(x, y, 1);
                     if ((creature = creatures.get(Coord.get(x, y))) != null) {
-                        if (creature.appearance == null) {
-                            creature.appearance = mapSLayers.glyph(creature.symbol, lerpFloatColorsBlended(unseenCreatureColorFloat, creature.color, 0.5f + 0.35f * (float) sight), x, y);
-                        } else {
-                            creature.appearance.setVisible(true);
-                            creature.appearance.setPackedColor(lerpFloatColorsBlended(unseenCreatureColorFloat, creature.color, 0.5f + 0.35f * (float) sight));
-                        }
+                        makeGlyphs(creature, x, y);
+                        creature.appearance.setVisible(true);
+                        creature.appearance.setPackedColor(lerpFloatColorsBlended(unseenCreatureColorFloat, creature.color, 0.5f + 0.35f * (float) sight));
                         if (creature.overlayAppearance != null) {
                             creature.overlayAppearance.setVisible(true);
                             creature.overlayAppearance.setPackedColor(lerpFloatColorsBlended(unseenCreatureColorFloat, creature.overlayColor, 0.5f + 0.35f * (float) sight));
@@ -350,15 +381,24 @@ public class Crawl extends Epigon {
                 } else {
                     RememberedTile rt = map.remembered[x][y];
                     if (rt != null) {
-                        mapSLayers.clear(x, y, 0);
                         if (rt.seenInDebug && (!config.debugConfig.debugActive || !config.debugConfig.odinView)) {
+                            mapSLayers.clear(x, y, 0);
                             map.remembered[x][y] = null;
+                            drawnMemory.remove(x, y);
+                            contextHandler.visionChanged();
+                        } else if (drawnMemory.contains(x, y)) {
+                            // the glyph and wall color are still there from an earlier frame; only backgrounds get reset
+                            if (rt.symbol != '#') {
+                                mapSLayers.backgrounds[x][y] = rt.back;
+                            }
                         } else {
+                            mapSLayers.clear(x, y, 0);
                             if (rt.symbol == '#') {
                                 wallColors[x][y] = rt.front;
                             } else {
                                 mapSLayers.put(x, y, rt.symbol, rt.front, rt.back, 0);
                             }
+                            drawnMemory.insert(x, y);
                         }
                     }
                 }
@@ -370,16 +410,71 @@ public class Crawl extends Epigon {
         mapSLayers.clear(2);
     }
 
+    /**
+     * Starts this frame's map backgrounds from colored lighting. Lighting is only calculated again after vision changed,
+     * when the path to the cursor or whether a menu is showing changed, or once every {@link #lightTickMillis} while a
+     * light flickers or strobes. Other frames copy the lit backgrounds from last time over the area around the player,
+     * which is the only area anything gets put over.
+     */
+    private void prepareBackgrounds(int startX, int startY, int endX, int endY) {
+        int cursorHash = -1;
+        if (!showingMenu) {
+            cursorHash = toCursor.size();
+            for (int i = 0; i < toCursor.size(); i++) {
+                cursorHash = cursorHash * 31 + toCursor.get(i).hashCode();
+            }
+        }
+        long now = TimeUtils.millis();
+        if (lightingStale || cursorHash != litCursorHash || (animatedLights && now - litMillis >= lightTickMillis)
+            || litBackgrounds == null || litBackgrounds.length != map.width || litBackgrounds[0].length != map.height) {
+            ArrayTools.fill(mapSLayers.backgrounds, map.lighting.backgroundColor);
+            map.lighting.update();
+            if (!showingMenu) {
+                for (int i = 0; i < toCursor.size(); i++) {
+                    map.lighting.updateUI(toCursor.get(i), softWhiteChain[i * 3 & 7]);
+                }
+            }
+            map.lighting.draw(mapSLayers);
+            if (litBackgrounds == null || litBackgrounds.length != map.width || litBackgrounds[0].length != map.height) {
+                litBackgrounds = new float[map.width][map.height];
+            }
+            ArrayTools.insert(mapSLayers.backgrounds, litBackgrounds, 0, 0);
+            animatedLights = false;
+            for (int i = 0; i < map.lighting.lights.size(); i++) {
+                Radiance light = map.lighting.lights.getAt(i);
+                if (light.flicker != 0f || light.strobe != 0f) {
+                    animatedLights = true;
+                    break;
+                }
+            }
+            lightingStale = false;
+            litCursorHash = cursorHash;
+            litMillis = now;
+        } else {
+            for (int x = startX; x < endX; x++) {
+                System.arraycopy(litBackgrounds[x], startY, mapSLayers.backgrounds[x], startY, endY - startY);
+            }
+        }
+    }
+
+    @Override
+    public void visionChanged() {
+        super.visionChanged();
+        lightingStale = true;
+    }
+
     public void changeLevel(int level) {
         changeLevel(level, null);
     }
 
     public void changeLevel(int level, Coord location) {
-        map.contents[player.location.x][player.location.y].remove(player);
+        map.remove(player.location.x, player.location.y, player);
 
         depth = level;
-        map = world[depth];
+        map = level(depth);
+        lightingStale = true;
         mapSLayers.clear();
+        drawnMemory.clear();
         for (int i = mapSLayers.glyphs.size() - 1; i >= 0; i--) {
             mapSLayers.removeGlyph(mapSLayers.glyphs.get(i));
         }
@@ -398,20 +493,74 @@ public class Crawl extends Epigon {
         }
 
         player.location = location;
-        map.contents[player.location.x][player.location.y].add(player);
+        map.add(player.location.x, player.location.y, player);
         player.appearance = mapSLayers.glyph(player.symbol, player.color, player.location.x, player.location.y);
 
         fxHandlerPassive.seen = fxHandler.seen = map.lighting.fovResult;
         creatures = map.creatures;
-        simple = map.simpleChars();
         lineDungeon = map.line;
-        calcFOV(player.location.x, player.location.y);
-        toPlayerDijkstra.initialize(simple);
-        monsterDijkstra.initialize(simple);
-        calcDijkstra();
+        engine.enterLevel(map);
         contextHandler.setMap(map, world);
     }
 
+    /**
+     * Gets the level at the given depth for the player to go to, building or restoring it first if it isn't in memory.
+     * Levels the player hasn't been to recently may be unloaded to make room.
+     */
+    private EpiMap level(int level) {
+        return levels.visit(level);
+    }
+
+    /**
+     * Saves the whole game over any earlier save.
+     */
+    public void saveGame() {
+        map.remove(player.location.x, player.location.y, player);
+        try {
+            FileManager.instance().writeStream(saveFilename, savePath, out -> SaveGame.write(out, levels, depth, player));
+            message("Game saved.");
+        } catch (IOException ex) {
+            message("Could not save the game: " + ex.getLocalizedMessage());
+        } finally {
+            map.add(player.location.x, player.location.y, player);
+        }
+    }
+
+    /**
+     * Replaces the current game with the saved one, if there is one and it fits the current world settings.
+     */
+    public void loadGame() {
+        SaveGame save;
+        try (InputStream in = FileManager.instance().openFile(saveFilename, savePath)) {
+            save = SaveGame.read(in, this::makeCreature);
+        } catch (NoSuchFileException ex) {
+            message("There is no saved game.");
+            return;
+        } catch (IOException ex) {
+            message("Could not load the saved game: " + ex.getLocalizedMessage());
+            return;
+        }
+        if (save.world.length != world.length || save.undergroundStart != undergroundStart) {
+            message("The saved game was made with different world settings.");
+            return;
+        }
+        // prepares the generator so levels the save didn't have can still be built
+        worldGenerator.buildLazyWorld(config.settings.worldWidth, config.settings.worldHeight, config.settings.worldDepth);
+        world = save.world;
+        levels = new LevelCache(worldGenerator, world, undergroundStart, residentLevels(), false, save.stored);
+        map.remove(player.location.x, player.location.y, player);
+        setPlayer(save.player);
+        changeLevel(save.depth, save.location);
+        message("Game loaded.");
+    }
+
+    /**
+     * Levels are only unloaded in a lazy world; a world built all at once keeps every level it built.
+     */
+    private int residentLevels() {
+        return config.settings.lazyWorld ? config.settings.residentLevels : LevelCache.ALL;
+    }
+
     private void setupLevel() {
         for (int x = 0; x < map.width; x++) {
             for (int y = 0; y < map.height; y++) {
@@ -421,7 +570,7 @@ public class Crawl extends Epigon {
             }
         }
 
-        simple = map.simpleChars();
+        map.simpleChars();
         lineDungeon = map.line;
         prunedDungeon = ArrayTools.copy(lineDungeon);
         wallColors = new float[map.width][map.height];
@@ -439,7 +588,7 @@ public class Crawl extends Epigon {
             .stream()
             .filter(c -> map.contents[c.x][c.y].floor != null) // TODO - allow flying/floating objects
             .forEach(c -> {
-                map.contents[c.x][c.y].add(RecipeMixer.applyModification(
+                map.add(c.x, c.y, RecipeMixer.applyModification(
                     RecipeMixer.buildWeapon(Weapon.randomPhysicalWeapon(player).copy(), player),
                     player.getRandomElement(Element.allEnergy).weaponModification()));
             });
@@ -449,32 +598,38 @@ public class Crawl extends Epigon {
                 if (map.contents[coord.x][coord.y].floor == null) {
                     continue; // TODO - allow spawning of flying things
                 }
-                Physical p = RecipeMixer.buildCreature(RawCreature.ENTRIES[rootChaos.nextInt(RawCreature.ENTRIES.length)]);
-                p.color = Utilities.progressiveLighten(p.color);
-                Physical pMeat = RecipeMixer.buildPhysical(p);
-                RecipeMixer.applyModification(pMeat, dataStarter.makeMeats());
-                Physical[] held = new Physical[p.creatureData.equippedDistinct.size() + 1];
-                p.creatureData.equippedDistinct.toArray(held);
-                held[held.length - 1] = pMeat;
-                double[] weights = new double[held.length];
-                Arrays.fill(weights, 1.0);
-                weights[held.length - 1] = 3.0;
-                int[] mins = new int[held.length], maxes = new int[held.length];
-                Arrays.fill(mins, 1);
-                Arrays.fill(maxes, 1);
-                mins[held.length - 1] = 2;
-                maxes[held.length - 1] = 4;
-                WeightedTableWrapper<Physical> pt = new WeightedTableWrapper<>(p.nextLong(), held, weights, mins, maxes);
-                p.physicalDrops.add(pt);
+                Physical p = makeCreature(RawCreature.ENTRIES[rootChaos.nextInt(RawCreature.ENTRIES.length)]);
                 p.location = coord;
-                map.contents[coord.x][coord.y].add(p);
-                p.appearance = mapSLayers.glyph(p.symbol, p.color, coord.x, coord.y);
-                p.appearance.setVisible(false);
+                map.add(coord.x, coord.y, p); // its glyph is made when it is first seen
                 map.creatures.put(coord, p);
             }
         }
     }
 
+    /**
+     * Makes a new creature of the given kind, ready to be placed in a level, with what it drops when killed.
+     */
+    public Physical makeCreature(RawCreature raw) {
+        Physical p = RecipeMixer.buildCreature(raw);
+        p.color = Utilities.progressiveLighten(p.color);
+        Physical pMeat = RecipeMixer.buildPhysical(p);
+        RecipeMixer.applyModification(pMeat, dataStarter.makeMeats());
+        Physical[] held = new Physical[p.creatureData.equippedDistinct.size() + 1];
+        p.creatureData.equippedDistinct.toArray(held);
+        held[held.length - 1] = pMeat;
+        double[] weights = new double[held.length];
+        Arrays.fill(weights, 1.0);
+        weights[held.length - 1] = 3.0;
+        int[] mins = new int[held.length], maxes = new int[held.length];
+        Arrays.fill(mins, 1);
+        Arrays.fill(maxes, 1);
+        mins[held.length - 1] = 2;
+        maxes[held.length - 1] = 4;
+        WeightedTableWrapper<Physical> pt = new WeightedTableWrapper<>(p.nextLong(), held, weights, mins, maxes);
+        p.physicalDrops.add(pt);
+        return p;
+    }
+
     /**
      * Attempts to equip a random weapon from the player's inventory
      */
@@ -0,0 +1,132 @@
+package squidpony.epigon.game;
+
+import java.util.IdentityHashMap;
+
+import squidpony.epigon.data.Physical;
+import squidpony.squidmath.Coord;
+
+/**
+ * Decides which creatures on a level get to act. Creatures near the player, or woken by noise, are awake and act when
+ * their time comes. Creatures far from the player are dormant: their conditions are only brought up to date every few
+ * turns, or when they wake up, by running the turns they missed all at once.
+ *
+ * Creatures are tracked by identity, since {@link Physical} compares by value and many creatures look alike.
+ */
+public class CreatureScheduler {
+
+    /**
+     * Dormant creatures have their conditions brought up to date once every this many turns.
+     */
+    public int tickRate = 10;
+    /**
+     * At most this many missed turns are run when a creature is brought up to date; any more are dropped.
+     */
+    public int catchUp = 30;
+    /**
+     * How many turns a creature stays awake after it was last near the player or heard a noise.
+     */
+    public int linger = 10;
+    /**
+     * How far from the player, horizontally and vertically, a creature wakes up. The area should cover everywhere the
+     * player's light and sight can reach.
+     */
+    public int wakeWidth, wakeHeight;
+
+    /**
+     * The turn being run now, counting up from 0 when the level was entered.
+     */
+    public int turn;
+
+    private Coord center = Coord.get(0, 0);
+
+    /**
+     * For each creature seen so far, the last turn it was brought up to through, then the last turn it stays awake.
+     */
+    private final IdentityHashMap<Physical, int[]> schedule = new IdentityHashMap<>();
+
+    public CreatureScheduler(int wakeWidth, int wakeHeight) {
+        this.wakeWidth = wakeWidth;
+        this.wakeHeight = wakeHeight;
+    }
+
+    /**
+     * Forgets every creature, as when a different level is entered.
+     */
+    public void clear() {
+        schedule.clear();
+        turn = 0;
+    }
+
+    /**
+     * Starts a new turn with the player at the given spot.
+     */
+    public void startTurn(Coord playerLocation) {
+        turn++;
+        center = playerLocation;
+    }
+
+    /**
+     * Brings the creature up to date with the turns it missed while dormant, and says whether it acts now. An awake
+     * creature also gets its {@link Physical#update()} for this turn, once no matter how often it acts in the turn.
+     *
+     * @return true if the creature is awake
+     */
+    public boolean awake(Physical creature) {
+        int[] s = schedule.get(creature);
+        if (s == null) {
+            s = new int[]{turn - 1, -1};
+            schedule.put(creature, s);
+        }
+        Coord c = creature.location;
+        if (Math.abs(c.x - center.x) <= wakeWidth && Math.abs(c.y - center.y) <= wakeHeight) {
+            s[1] = turn + linger;
+        }
+        if (s[1] >= turn) {
+            catchUp(creature, s, turn - 1);
+            if (s[0] < turn) {
+                creature.update();
+                s[0] = turn;
+            }
+            return true;
+        }
+        if (turn - s[0] >= tickRate) {
+            catchUp(creature, s, turn);
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the creature awake for a while, as when it hears a noise.
+     */
+    public void wake(Physical creature) {
+        int[] s = schedule.get(creature);
+        if (s == null) {
+            schedule.put(creature, new int[]{turn - 1, turn + linger});
+        } else {
+            s[1] = Math.max(s[1], turn + linger);
+        }
+    }
+
+    /**
+     * How many turns it would take at least for the player to get close enough to wake a creature at the given spot,
+     * or how many turns until it should be brought up to date anyway, whichever is less.
+     */
+    public int turnsUntilDue(Coord at) {
+        int far = Math.max(Math.abs(at.x - center.x) - wakeWidth, Math.abs(at.y - center.y) - wakeHeight);
+        return Math.max(1, Math.min(far, tickRate));
+    }
+
+    /**
+     * Stops tracking a creature that died or left the level.
+     */
+    public void remove(Physical creature) {
+        schedule.remove(creature);
+    }
+
+    private void catchUp(Physical creature, int[] s, int upTo) {
+        for (int i = Math.min(upTo - s[0], catchUp); i > 0; i--) {
+            creature.update();
+        }
+        s[0] = upTo;
+    }
+}
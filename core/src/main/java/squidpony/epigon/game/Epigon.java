@@ -15,14 +15,10 @@ import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import squidpony.ArrayTools;
-import squidpony.Messaging;
 import squidpony.panel.IColoredString;
-import squidpony.squidai.DijkstraMap;
 import squidpony.squidgrid.*;
 import squidpony.squidgrid.gui.gdx.*;
 import squidpony.squidgrid.gui.gdx.SquidInput.KeyHandler;
@@ -34,8 +30,6 @@ import squidpony.epigon.data.*;
 import squidpony.epigon.data.control.DataPool;
 import squidpony.epigon.data.control.DataStarter;
 import squidpony.epigon.data.control.RecipeMixer;
-import squidpony.epigon.data.quality.Element;
-import squidpony.epigon.data.trait.Grouping;
 import squidpony.epigon.data.trait.Interactable;
 import squidpony.epigon.display.*;
 import squidpony.epigon.files.*;
@@ -44,7 +38,6 @@ import squidpony.epigon.input.key.*;
 import squidpony.epigon.input.mouse.*;
 import squidpony.epigon.mapping.*;
 import squidpony.epigon.SoundManager;
-import squidpony.epigon.util.ConstantKey;
 import squidpony.epigon.util.Utilities;
 
 import static squidpony.squidgrid.gui.gdx.SColor.*;
@@ -53,7 +46,7 @@ import static squidpony.squidgrid.gui.gdx.SColor.*;
  * The main class of the game, constructed once in each of the platform-specific Launcher classes.
  * Doesn't use any platform-specific code.
  */
-public abstract class Epigon extends Game {
+public abstract class Epigon extends Game implements TurnListener {
 
     public final StatefulRNG rng;
     // meant to be used to generate seeds for other RNGs; can be seeded when they should be fixed
@@ -117,11 +110,10 @@ public abstract class Epigon extends Game {
     public CastleGenerator castleGenerator;
     public EpiMap[] world;
     public EpiMap map;
-    public char[][] simple;
     public char[][] lineDungeon, prunedDungeon;
     public float[][] wallColors, walls;
 
-    public GreasedRegion blockage, floors;
+    public GreasedRegion floors;
 
     private int messageCount;
     public int depth;
@@ -130,8 +122,10 @@ public abstract class Epigon extends Game {
     public MapOverlayHandler mapOverlayHandler;
     public ContextHandler contextHandler;
     public InfoHandler infoHandler;
-    public DijkstraMap toPlayerDijkstra, monsterDijkstra;
-    public LOS los;
+    /**
+     * Runs the turns of the game; this class only shows what happens in them.
+     */
+    public TurnEngine engine;
     public Coord cursor;
     public Physical player;
     public ArrayList<Coord> awaitedMoves;
@@ -142,7 +136,7 @@ public abstract class Epigon extends Game {
     private Viewport messageViewport, infoViewport, contextViewport;
 
     private GLProfiler glp;
-    private final StringBuilder tempSB = new StringBuilder(16);
+    private final StringBuilder tempSB = new StringBuilder(16), floatSB = new StringBuilder(32);
 
     // input handlers
     public KeyHandler fallbackKeys;
@@ -193,6 +187,9 @@ public abstract class Epigon extends Game {
         infoSize = displayConfig.infoSize;
         contextSize = displayConfig.contextSize;
         messageCount = displayConfig.messageCount;
+        engine = new TurnEngine(rng, config.debugConfig, mapSize.gridWidth, mapSize.gridHeight, this);
+        engine.scheduler.tickRate = settings.dormantTickRate;
+        engine.scheduler.catchUp = settings.dormantCatchUp;
 
         mixer = new RecipeMixer();
         //handBuilt = new DataStarter(mixer);
@@ -362,6 +359,7 @@ public abstract class Epigon extends Game {
         mapHoverSLayers.clearActions(); //  not sure if needed
         dataStarter = DataPool.instance().dataStarter;
         mapDecorator = new MapDecorator(dataStarter);
+        mapDecorator.flyweightTerrain = settings.flyweightTerrain;
 
         mapSLayers.addLayer();//first added layer adds at level 1, used for cases when we need "extra background"
         mapSLayers.addLayer();//next adds at level 2, used for the cursor line
@@ -391,6 +389,15 @@ public abstract class Epigon extends Game {
         player.stats.get(Stat.NUTRITION).min(0);
         player.stats.values().forEach(lv -> lv.max(Double.max(lv.max(), lv.actual())));
 
+        setPlayer(player);
+    }
+
+    /**
+     * Makes the given Physical the player, such as one just made or one loaded from a saved game.
+     */
+    public void setPlayer(Physical player) {
+        this.player = player;
+        engine.player = player;
         infoHandler.setPlayer(player);
         mapOverlayHandler.setPlayer(player);
 
@@ -398,173 +405,125 @@ public abstract class Epigon extends Game {
     }
 
     public void runTurn() {
-        OrderedSet<Coord> creaturePositions = creatures.keysAsOrderedSet();
-        Coord[] pa = new Coord[]{player.location};
-        ArrayList<Coord> path = new ArrayList<>(9);
-        for (int i = 0; i < creatures.size(); i++) {
-            path.clear();
-            final Physical creature = creatures.getAt(i);
-            creature.update();
-            if (creature.overlayAppearance != null && creature.overlaySymbol == '\uffff') {
-                mapSLayers.removeGlyph(creature.overlayAppearance);
-                creature.overlayAppearance = null;
+        engine.runTurn();
+    }
+
+    @Override
+    public void creatureUpdated(Physical creature) {
+        if (creature.overlayAppearance != null && creature.overlaySymbol == '\uffff') {
+            mapSLayers.removeGlyph(creature.overlayAppearance);
+            creature.overlayAppearance = null;
+        }
+    }
+
+    @Override
+    public void creatureMoved(Physical creature, Coord from, Coord to) {
+        boolean seen = map.lighting.fovResult[from.x][from.y] > 0 || map.lighting.fovResult[to.x][to.y] > 0;
+        if (creature.appearance == null) {
+            if (!seen) { // creatures only get glyphs while they are in view
+                return;
             }
-            Coord c = creature.location;
-            if (creature.stats.get(Stat.MOBILITY).actual() > 0
-                && map.lighting.colorLighting[0][player.location.x][player.location.y] > 0.1
-                && los.isReachable(map.lighting.resistances, c.x, c.y, player.location.x, player.location.y, Radius.CIRCLE)) {
-                Weapon weapon = chooseValidWeapon(creature, player);
-                creaturePositions.remove(c);
-                monsterDijkstra.reset();
-                if (weapon == null) {
-                    if (creature.weaponData != null) {
-                        ((StatefulRNG) monsterDijkstra.rng).setState(creature.location.hashCode() ^ (long) player.location.hashCode() << 32);
-//                        message(creature.name + " has sight " + creature.stats.get(Stat.SIGHT).actual());
-//                        monsterDijkstra.findTechniquePath(path, (int) creature.stats.get(Stat.SIGHT).actual(), creature.weaponData.technique, simple, los, creaturePositions, null, c, ps);
-                        monsterDijkstra.findAttackPath(path, 1, creature.weaponData.technique.aoe.getMinRange(), creature.weaponData.technique.aoe.getMaxRange(), los, creaturePositions, null, c, pa);
-                    }
-                } else {
-                    ((StatefulRNG) monsterDijkstra.rng).setState(creature.location.hashCode() ^ (long) player.location.hashCode() << 32);
-                    monsterDijkstra.findAttackPath(path, 1, weapon.technique.aoe.getMinRange(), weapon.technique.aoe.getMaxRange(), los, creaturePositions, null, c, pa);
-//                if(!path.isEmpty())
-//                {
-//                    messageIndex = Math.max(messages.size(), messageCount);
-//                    messages.add(IColoredString.Impl.create(creature.name + " #" + StringKit.hex(((EpiData)creature).hashCode())
-//                            + " has a path! " + path.toString(), Color.WHITE));
-//                    updateMessages();
-//                }
-                }
-                if (weapon == null && path.isEmpty()) // && monsterDijkstra.targetMap[c.x][c.y] == null
-                {
-                    Coord next = c.translateCapped(creature.between(-1, 2), creature.between(-1, 2), map.width, map.height);
-                    if (!map.creatures.containsKey(next) && map.contents[next.x][next.y].blockage == null) {
-                        path.add(next);
-                    }
-//                    if(map.lighting.fovResult[c.x][c.y] > 0.0) 
-//                        message(creature.name + " #" + StringKit.hex(((EpiData)creature).hashCode()) + " moved randomly.");
-                }
-                if (weapon != null || !path.isEmpty()) {
-                    Coord step;
-                    if (!path.isEmpty()) {
-                        step = path.get(0);
-                    } else {
-                        step = c;
-                    }
-                    if (weapon != null) {
-                        ActionOutcome ao = ActionOutcome.attack(creature, weapon, player);
-                        {
-                            Element element = ao.element;
-                            if (map.lighting.fovResult[c.x][c.y] > 0.0) {
-                                Direction dir = Direction.getDirection(player.location.x - creature.location.x, player.location.y - creature.location.y);
-                                fxHandler.attackEffect(creature, player, ao, dir);
-                            }
-                            if (ao.hit) {
-                                int amt = ao.actualDamage >> 1;
-                                applyStatChange(player, Stat.VIGOR, amt);
-                                amt = -amt; // flip sign for output message
-                                if (player.stats.get(Stat.VIGOR).actual() <= 0.0) {
-                                    if (ao.crit) {
-                                        message(Messaging.transform("The " + creature.name + " [Blood]brutally[] slay$ you with "
-                                            + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
-                                    } else {
-                                        message(Messaging.transform("The " + creature.name + " slay$ you with "
-                                            + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
-                                    }
-                                } else {
-                                    if (ao.crit) {
-                                        if (map.lighting.fovResult[c.x][c.y] > 0) {
-                                            mapSLayers.wiggle(player.appearance, 0.4f);
-                                        }
-                                        message(Messaging.transform("The " + creature.name + "[CW Bright Orange] critically[] " + element.verb + " you for "
-                                            + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
-                                    } else {
-                                        message(Messaging.transform("The " + creature.name + " " + element.verb + " you for "
-                                            + amt + " " + element.styledName + " damage!", creature.name, Messaging.NounTrait.NO_GENDER));
-                                    }
-                                    if (ao.targetConditioned) {
-                                        message(Messaging.transform("The " + creature.name + " "
-                                            + ConditionBlueprint.CONDITIONS.getOrDefault(ao.targetCondition, ConditionBlueprint.CONDITIONS.randomValue(creature)).verb + " you with @my attack!", creature.name, Messaging.NounTrait.NO_GENDER));
-                                        if (player.overlaySymbol != '\uffff') {
-                                            if (player.overlayAppearance != null) {
-                                                mapSLayers.removeGlyph(player.overlayAppearance);
-                                            }
-                                            player.overlayAppearance = mapSLayers.glyph(player.overlaySymbol, player.overlayColor, player.location.x, player.location.y);
-                                        }
-                                    }
-                                }
-                            } else {
-                                if (ao.crit) {
-                                    message("The " + creature.name + " missed you, but just barely.");
-                                } else {
-                                    message("The " + creature.name + " missed you.");
-                                }
-                            }
-                        }
-                    } else {
-                        if (creature.creatureData != null
-                            && creature.creatureData.lastUsedItem != null
-                            && creature.creatureData.lastUsedItem.radiance != null) {
-                            creature.creatureData.lastUsedItem.radiance.flare = 0f;
-                        }
-                        if (map.contents[step.x][step.y].blockage == null && !creatures.containsKey(step) && creatures.alterAtCarefully(i, step) != null) {
-                            map.contents[c.x][c.y].remove(creature);
-                            if (creature.appearance == null) {
-                                System.out.println("runTurn: recreating appearance of " + creature);
-                                creature.appearance = mapSLayers.glyph(creature.symbol, creature.color, c.x, c.y);
-                                if (creature.overlayAppearance != null && creature.overlaySymbol != '\uffff') {
-                                    creature.overlayAppearance = mapSLayers.glyph(creature.overlaySymbol, creature.overlayColor, c.x, c.y);
-                                }
-                            }
-                            if (map.lighting.fovResult[c.x][c.y] > 0) {
-                                creature.appearance.setVisible(true);
-                            }
-                            //creatures.putAt(step, creatures.remove(c), i);
-
-                            creature.location = step;
-                            map.contents[step.x][step.y].add(creature);
-                            if (creature.appearance != null) {
-//                            if (map.lighting.fovResult[c.x][c.y] > 0) {
-                                mapSLayers.slide(creature.appearance, c.x, c.y, step.x, step.y, 0.145f, null);
-                                if (creature.overlayAppearance != null) {
-                                    mapSLayers.slide(creature.overlayAppearance, c.x, c.y, step.x, step.y, 0.145f, null);
-                                }
-                            }
-//                            else if() 
-//                            {
-//                                creature.appearance.setPosition(mapSLayers.worldX(step.x), mapSLayers.worldY(step.y));
-//                                if(creature.overlayAppearance != null)
-//                                    creature.overlayAppearance.setPosition(mapSLayers.worldX(step.x), mapSLayers.worldY(step.y));
-//                            }
-                        }
-                    }
-                    creaturePositions.add(creature.location);
-                }
+            makeGlyphs(creature, from.x, from.y);
+        }
+        if (!seen) { // nobody sees it move, so it doesn't need to slide
+            creature.appearance.setPosition(mapSLayers.worldX(to.x), mapSLayers.worldY(to.y));
+            if (creature.overlayAppearance != null) {
+                creature.overlayAppearance.setPosition(mapSLayers.worldX(to.x), mapSLayers.worldY(to.y));
             }
+            return;
+        }
+        if (map.lighting.fovResult[from.x][from.y] > 0) {
+            creature.appearance.setVisible(true);
+        }
+        mapSLayers.slide(creature.appearance, from.x, from.y, to.x, to.y, 0.145f, null);
+        if (creature.overlayAppearance != null) {
+            mapSLayers.slide(creature.overlayAppearance, from.x, from.y, to.x, to.y, 0.145f, null);
+        }
+    }
+
+    @Override
+    public void playerMoved(Physical player, Coord from, Coord to, Runnable finishTurn) {
+        // the rest of the turn waits until the player is seen to arrive
+        mapSLayers.slide(player.appearance, from.x, from.y, to.x, to.y, 0.145f, finishTurn);
+        if (player.overlayAppearance != null) {
+            mapSLayers.slide(player.overlayAppearance, from.x, from.y, to.x, to.y, 0.145f, null);
+        }
+        sound.playFootstep();
+    }
+
+    @Override
+    public void attacked(Physical actor, Physical target, ActionOutcome outcome) {
+        if (map.lighting.fovResult[actor.location.x][actor.location.y] > 0.0 && actor.appearance != null && target.appearance != null) {
+            Direction dir = Direction.getDirection(target.location.x - actor.location.x, target.location.y - actor.location.y);
+            fxHandler.attackEffect(actor, target, outcome, dir); // TODO - tie creature glyph removal to appropriate moment in attack effect
         }
+        if (outcome.hit && outcome.crit && target.stats.get(Stat.VIGOR).actual() > 0
+            && target.appearance != null && target.appearance.isVisible()) {
+            mapSLayers.wiggle(0.0f, target.appearance, 0.4f, () -> target.appearance.setPosition(
+                mapSLayers.worldX(target.location.x), mapSLayers.worldY(target.location.y)));
+        }
+    }
 
-        // Update all the stats in motion
-        OrderedMap<ConstantKey, Double> changes = new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance);
-        for (Entry<ConstantKey, LiveValue> entry : player.stats.entrySet()) {
-            double amt = entry.getValue().tick();
-            if (amt != 0) {
-                changes.put(entry.getKey(), amt);
+    @Override
+    public void conditioned(Physical target) {
+        if (target.overlaySymbol != '\uffff') {
+            if (target.overlayAppearance != null) {
+                mapSLayers.removeGlyph(target.overlayAppearance);
             }
+            target.overlayAppearance = mapSLayers.glyph(target.overlaySymbol, target.overlayColor, target.location.x, target.location.y);
         }
-        for (Stat s : Stat.rolloverProcessOrder) {
-            double val = player.stats.get(s).actual();
-            if (val < 0) {
-                player.stats.get(s).actual(0);
-                player.stats.get(s.getRollover()).actual(player.stats.get(s.getRollover()).actual() + val);
-                changes.merge(s.getRollover(), val, Double::sum);
+    }
+
+    @Override
+    public void killed(Physical target, ActionOutcome outcome) {
+        if (target.appearance != null) {
+            if (outcome.crit && target.appearance.isVisible()) {
+                mapSLayers.burst(target.location.x, target.location.y, 1, Radius.CIRCLE, target.appearance.shown, target.color, SColor.translucentColor(target.color, 0f), 1);
             }
+            mapSLayers.removeGlyph(target.appearance);
+            target.appearance = null;
         }
+        if (target.overlayAppearance != null) {
+            mapSLayers.removeGlyph(target.overlayAppearance);
+            target.overlayAppearance = null;
+        }
+    }
 
-        infoHandler.updateDisplay(player, changes);
-        if (player.stats.get(Stat.VIGOR).actual() <= 0) {
-            message("You are now dead with Vigor: " + player.stats.get(Stat.VIGOR).actual());
-            batch.setFilter(grayscale);
+    @Override
+    public void statsChanged(Physical target, StatChanges changes) {
+        infoHandler.updateDisplay(target, changes);
+
+        for (int i = 0; i < changes.size(); i++) {
+            double val = changes.amountAt(i);
+            SColor color = val >= 0 ? SColor.CW_RICH_JADE : SColor.CW_RED;
+            long tenths = Math.round(Math.abs(val) * 10.0); // same as formatting with %.1f, without a Formatter
+            floatSB.setLength(0);
+            if (val < 0 && tenths != 0) {
+                floatSB.append('-');
+            }
+            floatSB.append(tenths / 10).append('.').append(tenths % 10).append(' ')
+                .append(Utilities.capitalizeFirst(changes.keyAt(i).toString()));
+            fxHandlerPassive.floatText(target.location, floatSB.toString(), color);
         }
+    }
 
+    @Override
+    public void statsTicked(Physical target, StatChanges changes) {
+        infoHandler.updateDisplay(target, changes);
+    }
+
+    @Override
+    public void playerDied() {
+        batch.setFilter(grayscale);
+    }
+
+    @Override
+    public void interrupted() {
+        cancelMove();
+    }
+
+    @Override
+    public void turnEnded() {
         if (autoplayTurns > 0) {
             autoplayTurns--;
             Timer.schedule(new Task() {
@@ -579,32 +538,6 @@ public abstract class Epigon extends Game {
         }
     }
 
-    private void applyStatChange(Physical target, Stat stat, double amount) {
-        OrderedMap<ConstantKey, Double> changes = new OrderedMap<>(ConstantKey.ConstantKeyHasher.instance);
-        changes.put(stat, amount);
-        target.stats.get(stat).addActual(amount);
-        for (Stat s : Stat.rolloverProcessOrder) {
-            LiveValue lv = target.stats.get(s);
-            if (lv == null) {
-                continue; // doesn't have this stat so skip it
-            }
-            double val = lv.actual();
-            if (val < 0) {
-                target.stats.get(s).actual(0);
-                target.stats.get(s.getRollover()).addActual(val);
-                changes.merge(s.getRollover(), val, Double::sum);
-            }
-        }
-
-        infoHandler.updateDisplay(target, changes);
-
-        for (Entry<ConstantKey, Double> entry : changes.entrySet()) {
-            double val = entry.getValue();
-            SColor color = val >= 0 ? SColor.CW_RICH_JADE : SColor.CW_RED;
-            fxHandlerPassive.floatText(target.location, String.format("%.1f %s", val, Utilities.capitalizeFirst(entry.getKey().toString())), color);
-        }
-    }
-
     private void clearContents(SparseLayers layers, Color background) {
         layers.clear();
         layers.fillBackground(background);
@@ -669,86 +602,69 @@ public abstract class Epigon extends Game {
     }
 
     public void calcFOV(int checkX, int checkY) {
-        //map.lighting.viewerRange = player.stats.get(Stat.SIGHT).actual();
-        // this is really important; it sets the resistances of the map's lighting
-        map.opacities();
-        //we'll search for lights every time we move
-        map.lighting.lights.clear();
-        Radiance radiance;
-        // adds the most relevant Radiance in each cell to the collection of lights in map.lighting
-        for (int x = 0; x < map.width; x++) {
-            for (int y = 0; y < map.height; y++) {
-                radiance = map.contents[x][y].getAnyRadiance();
-                if (radiance != null) {
-                    map.lighting.addLight(x, y, radiance);
-                }
-            }
-        }
-        map.lighting.calculateFOV(checkX, checkY,
-            checkX - 1 - (mapSize.gridWidth >>> 1), checkY - 1 - (mapSize.gridHeight >>> 1),
-            checkX + 1 + (mapSize.gridWidth >>> 1), checkY + 1 + (mapSize.gridHeight >>> 1));
-        FOV.addFOVsInto(map.lighting.fovResult, FOV.reuseFOV(map.lighting.resistances, map.lighting.tempFOV,
-            checkX, checkY, 4.0, Radius.CIRCLE));
+        engine.calcFOV(checkX, checkY);
+    }
 
+    @Override
+    public void visionChanged() {
+        if (contextHandler != null) {
+            contextHandler.visionChanged();
+        }
         if (config.debugConfig.debugActive && config.debugConfig.odinView) {
-            //choice of tempFOV is arbitrary; we just need a 2D array of all 0.6
-            ArrayTools.fill(map.lighting.tempFOV, 0.6);
-            //makes tempColorLighting filled with 0.6-strength white light
-            SColor.colorLightingInto(map.lighting.tempColorLighting, map.lighting.tempFOV, FLOAT_WHITE);
-            //mixes the full screen of 0.6-strength white light with existing lights
-            SColor.mixColoredLighting(map.lighting.colorLighting, map.lighting.tempColorLighting);
-            for (int x = 0; x < map.width; x++) {
-                for (int y = 0; y < map.height; y++) {
-                    //all of colorLighting will be lit now, so all of fovResult will have a value greater than 0.
-                    map.lighting.fovResult[x][y]
-                        = MathUtils.clamp(map.lighting.fovResult[x][y] + map.lighting.colorLighting[0][x][y], 0, 1);
-                }
-            }
-            map.seen.allOn();
             ArrayTools.insert(lineDungeon, prunedDungeon, 0, 0);
         } else {
-            map.seen.or(map.tempSeen.refill(map.lighting.fovResult, 0.0001, Double.POSITIVE_INFINITY));
             LineKit.pruneLines(lineDungeon, map.seen, LineKit.lightAlt, prunedDungeon);
         }
 
         Physical creature;
-        for (int x = 0; x < map.width; x++) {
-            for (int y = 0; y < map.height; y++) {
-                if (map.lighting.fovResult[x][y] > 0) {
-                    if (map.remembered[x][y] == null) {
-                        map.remembered[x][y] = new RememberedTile(map.contents[x][y]);
-                    } else {
-                        map.remembered[x][y].remake(map.contents[x][y]);
-                    }
-                    if (config.debugConfig.debugActive && config.debugConfig.odinView) {
-                        map.remembered[x][y].seenInDebug = true;
-                    }
-                    if ((creature = creatures.get(Coord.get(x, y))) != null) {
-                        if (creature.appearance == null) {
-                            creature.appearance = mapSLayers.glyph(creature.symbol, creature.color, x, y);
-                        }
-                        creature.appearance.setVisible(true);
-                    }
-                } else if ((creature = creatures.get(Coord.get(x, y))) != null && creature.appearance != null
-                    && creature.appearance.isVisible()) {
-                    creature.appearance.setVisible(false);
-                    if (creature.overlayAppearance != null) {
-                        creature.overlayAppearance.setVisible(false);
-                    }
-                }
+        Coord c;
+        for (int i = 0; i < creatures.size(); i++) {
+            c = creatures.keyAt(i);
+            creature = creatures.getAt(i);
+            if (map.lighting.fovResult[c.x][c.y] > 0) {
+                makeGlyphs(creature, c.x, c.y);
+                creature.appearance.setVisible(true);
+            } else if (creature.appearance != null) {
+                dropGlyphs(creature);
+            }
+        }
+    }
+
+    /**
+     * Gives a creature in view the glyphs it doesn't have yet, including the overlay for any condition it shows.
+     */
+    protected void makeGlyphs(Physical creature, int x, int y) {
+        if (creature.appearance == null) {
+            creature.appearance = mapSLayers.glyph(creature.symbol, creature.color, x, y);
+        }
+        if (creature.overlayAppearance == null && creature.overlaySymbol != '\uffff') {
+            creature.overlayAppearance = mapSLayers.glyph(creature.overlaySymbol, creature.overlayColor, x, y);
+        }
+    }
+
+    /**
+     * Takes the glyphs of a creature out of view off the map, so the glyph list only holds creatures near the player.
+     * A glyph that is still sliding or being hit is only hidden until its animation is done, and goes on a later turn.
+     */
+    protected void dropGlyphs(Physical creature) {
+        if (creature.appearance.hasActions()
+            || creature.overlayAppearance != null && creature.overlayAppearance.hasActions()) {
+            creature.appearance.setVisible(false);
+            if (creature.overlayAppearance != null) {
+                creature.overlayAppearance.setVisible(false);
             }
+            return;
+        }
+        mapSLayers.removeGlyph(creature.appearance);
+        creature.appearance = null;
+        if (creature.overlayAppearance != null) {
+            mapSLayers.removeGlyph(creature.overlayAppearance);
+            creature.overlayAppearance = null;
         }
     }
 
     public void calcDijkstra() {
-        toPlayerDijkstra.clearGoals();
-        toPlayerDijkstra.resetMap();
-        monsterDijkstra.clearGoals();
-        monsterDijkstra.resetMap();
-        blockage.refill(map.lighting.fovResult, 0.0);
-        //blockage.fringe8way(); // seems like this is preventing the player from clicking into tiles they can see at the edge of light
-        toPlayerDijkstra.setGoal(player.location);
-        toPlayerDijkstra.scan(blockage);
+        engine.calcDijkstra();
     }
 
     public void scheduleMove(Direction dir) {
@@ -768,32 +684,11 @@ public abstract class Epigon extends Game {
     }
 
     public Weapon chooseValidWeapon(Physical attacker, Physical target) {
-        List<Weapon> weapons = validAttackOptions(attacker, target);
-        return weapons == null || weapons.isEmpty() ? null : rng.getRandomElement(weapons);
+        return engine.chooseValidWeapon(attacker, target);
     }
 
     public List<Weapon> validAttackOptions(Physical attacker, Physical target) {
-        if (attacker == null || attacker.creatureData == null || attacker.creatureData.weaponChoices == null || target == null) {
-            return null;
-        }
-
-        Arrangement<Weapon> table = attacker.creatureData.weaponChoices.table;
-        List<Weapon> weapons = new ArrayList<>(table.keySet().size());
-        double range;
-        for (Weapon w : table.keySet()) {
-            range = Radius.CIRCLE.radius(attacker.location, target.location);
-            if ((w.shape == Weapon.ARC || w.shape == Weapon.BURST)) {
-                if (range < 2.5) {
-                    continue;
-                }
-                if (range <= w.rawWeapon.range + 2.5) {
-                    weapons.add(w);
-                }
-            } else if (range <= w.rawWeapon.range + 1.5) {
-                weapons.add(w);
-            }
-        }
-        return weapons;
+        return engine.validAttackOptions(attacker, target);
     }
 
     public void showAttackOptions(Physical target, OrderedMap<String, Weapon> options) {
@@ -886,176 +781,18 @@ public abstract class Epigon extends Game {
     }
 
     public void attack(Physical target) {
-        attack(target, chooseValidWeapon(player, target));
+        engine.attack(target);
     }
 
     public void attack(Physical target, Weapon choice) {
-        int targetX = target.location.x, targetY = target.location.y;
-        if (target == player){
-            message("It's not wise to attack yourself!");
-            return;
-        }
-
-        ActionOutcome ao = ActionOutcome.attack(player, choice, target);
-        Element element = ao.element;
-        Direction dir = Direction.getDirection(target.location.x - player.location.x, target.location.y - player.location.y);
-
-        calcFOV(player.location.x, player.location.y);
-        fxHandler.attackEffect(player, target, ao, dir); // TODO - tie creature glyph removal to appropriate moment in attack effect
-
-        if (ao.hit) {
-            applyStatChange(target, Stat.VIGOR, ao.actualDamage);
-            if (target.stats.get(Stat.VIGOR).actual() <= 0) {
-                if (target.appearance != null) {
-                    mapSLayers.removeGlyph(target.appearance);
-                    target.appearance = null;
-                }
-                if (target.overlayAppearance != null) {
-                    mapSLayers.removeGlyph(target.overlayAppearance);
-                    target.overlayAppearance = null;
-                }
-                creatures.remove(target.location);
-                map.contents[targetX][targetY].remove(target);
-                if (ao.crit) {
-                    Stream.concat(target.physicalDrops.stream(), target.elementDrops.getOrDefault(element, new ArrayList<>(0)).stream())
-                        .map(table -> {
-                            int quantity = table.quantity();
-                            Physical p = RecipeMixer.buildPhysical(table.random());
-                            if (p.groupingData != null) {
-                                p.groupingData.quantity += quantity;
-                            } else {
-                                p.groupingData = new Grouping(quantity);
-                            }
-                            return p;
-                        })
-                        .forEach(item -> {
-                            if (item.attached) {
-                                return;
-                            }
-                            map.contents[targetX][targetY].add(item);
-                            int tx = MathUtils.clamp(targetX + player.between(-1, 2), 0, config.settings.worldWidth - 1),
-                                ty = MathUtils.clamp(targetY + player.between(-1, 2), 0, config.settings.worldHeight - 1);
-                            if (map.lighting.resistances[tx][ty] < 0.9) {
-                                map.contents[tx][ty].add(item);
-                            }
-                        });
-                    if (target.appearance != null && target.appearance.isVisible()) {
-                        mapSLayers.burst(targetX, targetY, 1, Radius.CIRCLE, target.appearance.shown, target.color, SColor.translucentColor(target.color, 0f), 1);
-                    }
-                    message("You [Blood]brutally[] defeat the " + target.name + " with " + -ao.actualDamage + " " + element.styledName + " damage!");
-                } else {
-                    Stream.concat(target.physicalDrops.stream(), target.elementDrops.getOrDefault(element, new ArrayList<>()).stream())
-                        .map(table -> {
-                            int quantity = table.quantity();
-                            Physical p = RecipeMixer.buildPhysical(table.random());
-                            if (p.groupingData != null) {
-                                p.groupingData.quantity += quantity;
-                            } else {
-                                p.groupingData = new Grouping(quantity);
-                            }
-                            return p;
-                        })
-                        .forEach(item -> {
-                            if (item.attached) {
-                                return;
-                            }
-                            map.contents[targetX][targetY].add(item);
-                        });
-                    if (target.appearance != null && target.appearance.isVisible()) {
-                        mapSLayers.burst(targetX, targetY, 1, Radius.CIRCLE, target.appearance.shown, target.color, SColor.translucentColor(target.color, 0f), 1);
-                    }
-                    message("You defeat the " + target.name + " with " + -ao.actualDamage + " " + element.styledName + " damage!");
-                }
-            } else {
-                String amtText = String.valueOf(-ao.actualDamage);
-                if (ao.crit) {
-                    if (target.appearance != null && target.appearance.isVisible()) {
-                        mapSLayers.wiggle(0.0f, target.appearance, 0.4f, () -> target.appearance.setPosition(
-                            mapSLayers.worldX(target.location.x), mapSLayers.worldY(target.location.y)));
-                    }
-                    message(Messaging.transform("You [CW Bright Orange]critically[] " + element.verb + " the " + target.name + " for "
-                        + amtText + " " + element.styledName + " damage!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
-                } else {
-                    message(Messaging.transform("You " + element.verb + " the " + target.name + " for "
-                        + amtText + " " + element.styledName + " damage!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
-                }
-                if (ao.targetConditioned) {
-                    message(Messaging.transform("You "
-                        + ConditionBlueprint.CONDITIONS.getOrDefault(ao.targetCondition, ConditionBlueprint.CONDITIONS.randomValue(player)).verb
-                        + " the " + target.name + " with your attack!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
-                    if (target.overlaySymbol != '\uffff') {
-                        if (target.overlayAppearance != null) {
-                            mapSLayers.removeGlyph(target.overlayAppearance);
-                        }
-                        target.overlayAppearance = mapSLayers.glyph(target.overlaySymbol, target.overlayColor, targetX, targetY);
-                    }
-                }
-            }
-        } else {
-            message("Missed the " + target.name + (ao.crit ? ", but just barely." : "..."));
-        }
+        engine.attack(target, choice);
     }
 
     /**
-     * Move the player if he isn't bumping into a wall or trying to go off the map somehow.
+     * Move the player if they aren't bumping into a wall or trying to go off the map somehow.
      */
     public void move(Direction dir) {
-        player.update();
-        if (player.overlayAppearance != null && player.overlaySymbol == '\uffff') {
-            mapSLayers.removeGlyph(player.overlayAppearance);
-            player.overlayAppearance = null;
-        }
-        int newX = player.location.x + dir.deltaX;
-        int newY = player.location.y + dir.deltaY;
-        Coord newPos = Coord.get(newX, newY);
-        if (!map.inBounds(newX, newY)) {
-            message("You've reached the edge of the world, you can go no further.");
-            return;
-        }
-        map.contents[player.location.x][player.location.y].remove(player);
-        if (map.contents[newX][newY].blockage == null) {
-            mapSLayers.slide(player.appearance, player.location.x, player.location.y, newX, newY, 0.145f, () -> {
-                calcFOV(newX, newY);
-                calcDijkstra();
-                runTurn();
-            });
-            if (player.overlayAppearance != null) {
-                mapSLayers.slide(player.overlayAppearance, player.location.x, player.location.y, newX, newY, 0.145f, null);
-            }
-            player.location = newPos;
-            map.contents[player.location.x][player.location.y].add(player);
-            sound.playFootstep();
-        } else {
-            Physical thing = map.contents[newX][newY].getCreature();
-            if (thing != null) {
-                cancelMove();
-                attack(thing);
-                calcFOV(player.location.x, player.location.y);
-                calcDijkstra();
-                runTurn();
-            } else if (!map.contents[newX][newY].contents.isEmpty()
-                && (thing = map.contents[newX][newY].contents.get(0)).interactableData != null
-                && !thing.interactableData.isEmpty()
-                && thing.interactableData.get(0).bumpAction) {
-                cancelMove();
-                thing.location = newPos; // total hack; needed by door-opening interaction
-                message(Messaging.transform(thing.interactableData.get(0).interaction.interact(player, thing, this),
-                    player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
-                runTurn();
-            } else if ((thing = map.contents[newX][newY].getLargeNonCreature()) != null) {
-                cancelMove();
-                if (thing.interactableData != null && !thing.interactableData.isEmpty() && thing.interactableData.get(0).bumpAction) {
-                    thing.location = newPos; // total hack; needed by door-opening interaction
-                    message(Messaging.transform(thing.interactableData.get(0).interaction.interact(player, thing, this),
-                        player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
-                } else {
-                    message("Ran into " + thing.name);
-                }
-                runTurn();
-            } else {
-                runTurn();
-            }
-        }
+        engine.move(dir);
     }
 
     public void cancelMove() {
@@ -0,0 +1,222 @@
+package squidpony.epigon.game;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import squidpony.epigon.data.CalcStat;
+import squidpony.epigon.data.LiveValue;
+import squidpony.epigon.data.Physical;
+
+/**
+ * When each creature next gets to act, in time units where an ordinary action takes {@link #ACTION_TIME}. Quicker
+ * creatures take less time per action, so they act more often than slower ones.
+ *
+ * The creatures are kept in a binary heap of int ids ordered by time, with the times and positions in primitive arrays
+ * indexed by id, so scheduling and popping don't allocate once the arrays are big enough. Actors that act at the same
+ * time go in the order they were scheduled.
+ */
+public class Timeline {
+
+    /**
+     * How long an action takes for a creature with no quickness at all.
+     */
+    public static final int ACTION_TIME = 100;
+
+    private long now, sequence;
+    private int size;
+    private int[] heap, positions, free;
+    private long[] times, orders;
+    private Physical[] actors;
+    private int freeCount, idCount;
+    private final IdentityHashMap<Physical, Integer> ids = new IdentityHashMap<>();
+
+    public Timeline() {
+        this(64);
+    }
+
+    public Timeline(int capacity) {
+        capacity = Math.max(capacity, 4);
+        heap = new int[capacity];
+        positions = new int[capacity];
+        free = new int[capacity];
+        times = new long[capacity];
+        orders = new long[capacity];
+        actors = new Physical[capacity];
+    }
+
+    /**
+     * How long an action takes for the given creature, shorter the higher its quickness is. Quickness 0 takes
+     * {@link #ACTION_TIME}, 8 takes half that, and -4 takes twice that.
+     */
+    public static int actionTime(Physical actor) {
+        LiveValue quickness = actor.stats.get(CalcStat.QUICKNESS);
+        double q = quickness == null ? 0.0 : Math.max(-7.0, quickness.actual());
+        return Math.max(1, (int) (ACTION_TIME * 8.0 / (8.0 + q) + 0.5));
+    }
+
+    /**
+     * The time the last actor taken from here acted at, or was moved up to with {@link #advance(long)}.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Moves the current time forward to the given time, if it is later.
+     */
+    public void advance(long time) {
+        now = Math.max(now, time);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets every actor and starts the time over at 0.
+     */
+    public void clear() {
+        Arrays.fill(actors, 0, idCount, null);
+        ids.clear();
+        size = 0;
+        freeCount = 0;
+        idCount = 0;
+        now = 0;
+        sequence = 0;
+    }
+
+    /**
+     * Has the actor act again after the given delay from now, whether or not it was waiting to act already.
+     */
+    public void schedule(Physical actor, long delay) {
+        Integer known = ids.get(actor);
+        int id = known == null ? newId(actor) : known;
+        times[id] = now + delay;
+        orders[id] = sequence++;
+        int pos = positions[id];
+        if (pos < 0) {
+            pos = size++;
+            heap[pos] = id;
+            positions[id] = pos;
+            siftUp(pos);
+        } else {
+            siftDown(siftUp(pos));
+        }
+    }
+
+    /**
+     * Has the actor act now if it was waiting to act later. Does nothing to actors that aren't waiting to act.
+     */
+    public void wake(Physical actor) {
+        Integer id = ids.get(actor);
+        if (id != null && positions[id] >= 0 && times[id] > now) {
+            times[id] = now;
+            siftUp(positions[id]);
+        }
+    }
+
+    /**
+     * Stops the actor from acting again, as when it dies.
+     */
+    public void remove(Physical actor) {
+        Integer known = ids.remove(actor);
+        if (known == null) {
+            return;
+        }
+        int id = known, pos = positions[id];
+        if (pos >= 0) {
+            int last = heap[--size];
+            if (pos < size) {
+                heap[pos] = last;
+                positions[last] = pos;
+                siftDown(siftUp(pos));
+            }
+        }
+        actors[id] = null;
+        free[freeCount++] = id;
+    }
+
+    /**
+     * Takes the actor that acts soonest, if it acts no later than the given time, and moves the current time up to when
+     * it acts. The actor won't act again until it is scheduled again.
+     *
+     * @return the next actor, or null if no actor acts by the given time
+     */
+    public Physical next(long until) {
+        if (size == 0 || times[heap[0]] > until) {
+            return null;
+        }
+        int id = heap[0];
+        int last = heap[--size];
+        positions[id] = -1;
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        now = Math.max(now, times[id]);
+        return actors[id];
+    }
+
+    private int newId(Physical actor) {
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            if (idCount == actors.length) {
+                int capacity = idCount << 1;
+                heap = Arrays.copyOf(heap, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                free = Arrays.copyOf(free, capacity);
+                times = Arrays.copyOf(times, capacity);
+                orders = Arrays.copyOf(orders, capacity);
+                actors = Arrays.copyOf(actors, capacity);
+            }
+            id = idCount++;
+        }
+        actors[id] = actor;
+        positions[id] = -1;
+        ids.put(actor, id);
+        return id;
+    }
+
+    private boolean before(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && orders[a] < orders[b]);
+    }
+
+    private int siftUp(int pos) {
+        int id = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1, p = heap[parent];
+            if (!before(id, p)) {
+                break;
+            }
+            heap[pos] = p;
+            positions[p] = pos;
+            pos = parent;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+        return pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = (pos << 1) + 1, right = child + 1;
+            if (right < size && before(heap[right], heap[child])) {
+                child = right;
+            }
+            int c = heap[child];
+            if (!before(c, id)) {
+                break;
+            }
+            heap[pos] = c;
+            positions[c] = pos;
+            pos = child;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+    }
+}
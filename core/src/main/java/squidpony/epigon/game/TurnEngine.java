@@ -0,0 +1,566 @@
+package squidpony.epigon.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import squidpony.ArrayTools;
+import squidpony.Messaging;
+import squidpony.squidai.AOE;
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Direction;
+import squidpony.squidgrid.FOV;
+import squidpony.squidgrid.LOS;
+import squidpony.squidgrid.Measurement;
+import squidpony.squidgrid.Radius;
+import squidpony.squidgrid.gui.gdx.SColor;
+import squidpony.squidmath.*;
+
+import squidpony.epigon.combat.ActionOutcome;
+import squidpony.epigon.data.*;
+import squidpony.epigon.data.control.RecipeMixer;
+import squidpony.epigon.data.quality.Element;
+import squidpony.epigon.data.trait.Grouping;
+import squidpony.epigon.files.DebugConfig;
+import squidpony.epigon.mapping.EpiMap;
+import squidpony.epigon.mapping.RememberedTile;
+
+/**
+ * Moves the game along one turn at a time: creature AI, combat, stats that change over time, and what the player can
+ * see and remember. Nothing here draws anything, needs a GL context, or waits on an animation, so turns can be run as
+ * fast as they can be calculated; anything that should be shown is passed to the {@link TurnListener}.
+ *
+ * The level comes from {@link #enterLevel(EpiMap)}, and {@link #player} must be set and on the level before that.
+ */
+public class TurnEngine {
+
+    public final StatefulRNG rng;
+    public final DebugConfig debug;
+    public TurnListener listener;
+
+    /**
+     * The size of the area around the player that gets lit each turn; anything further away can't be seen anyway.
+     */
+    public int viewWidth, viewHeight;
+
+    public EpiMap map;
+    public OrderedMap<Coord, Physical> creatures;
+    public Physical player;
+    public char[][] simple;
+
+    public DijkstraMap toPlayerDijkstra, monsterDijkstra;
+    public LOS los = new LOS(LOS.BRESENHAM);
+    public GreasedRegion blockage;
+    /**
+     * Decides which creatures act each turn and keeps the far-off ones from costing anything most turns.
+     */
+    public final CreatureScheduler scheduler;
+    /**
+     * When each creature on the level acts next. The player's actions move time along, and quicker creatures act more
+     * often in that time than slower ones.
+     */
+    public final Timeline timeline = new Timeline();
+
+    /**
+     * Distances to the nearest cell a creature could attack the player from, one for each maximum weapon range seen so
+     * far, reused from turn to turn. Every creature with a weapon that reaches adjacent cells walks down the one for its
+     * range, so a turn does one scan per range instead of one per creature.
+     */
+    private final OrderedMap<Integer, double[][]> attackFields = new OrderedMap<>();
+    /**
+     * The maximum ranges whose attack fields were already found this turn.
+     */
+    private final OrderedSet<Integer> freshAttackFields = new OrderedSet<>();
+    /**
+     * Reused for every set of stat changes passed to the listener, which shouldn't hold onto it.
+     */
+    private final StatChanges changes = new StatChanges();
+
+    /**
+     * @param rng        used for choices the game makes, such as which valid weapon a creature attacks with
+     * @param debug      the debug settings, which can let the player see everything
+     * @param viewWidth  the width of the area around the player that gets lit each turn
+     * @param viewHeight the height of the area around the player that gets lit each turn
+     * @param listener   hears about everything that happens; may be a plain {@code new TurnListener() {}}
+     */
+    public TurnEngine(StatefulRNG rng, DebugConfig debug, int viewWidth, int viewHeight, TurnListener listener) {
+        this.rng = rng;
+        this.debug = debug;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.listener = listener;
+        scheduler = new CreatureScheduler((viewWidth >>> 1) + 1, (viewHeight >>> 1) + 1);
+    }
+
+    /**
+     * Makes the given level the one turns happen on. The player should already be in it.
+     */
+    public void enterLevel(EpiMap level) {
+        map = level;
+        creatures = level.creatures;
+        scheduler.clear();
+        timeline.clear();
+        for (int i = 0; i < creatures.size(); i++) {
+            Physical creature = creatures.getAt(i);
+            timeline.schedule(creature, Timeline.actionTime(creature));
+            level.statStore.attach(creature);
+        }
+        simple = level.simpleChars();
+        if (toPlayerDijkstra == null) {
+            StatefulRNG dijkstraRNG = new StatefulRNG();// random seed, player won't make deterministic choices
+            toPlayerDijkstra = new DijkstraMap(simple, Measurement.EUCLIDEAN, dijkstraRNG);
+            monsterDijkstra = new DijkstraMap(simple, Measurement.EUCLIDEAN, dijkstraRNG); // shared RNG
+        } else {
+            toPlayerDijkstra.initialize(simple);
+            monsterDijkstra.initialize(simple);
+        }
+        if (blockage == null || blockage.width != level.width || blockage.height != level.height) {
+            blockage = new GreasedRegion(level.width, level.height);
+        }
+        calcFOV(player.location.x, player.location.y);
+        calcDijkstra();
+    }
+
+    /**
+     * Finishes the turn after the player acted: works out what can be seen from the player's new spot, then lets every
+     * creature act.
+     */
+    public void endTurn() {
+        calcFOV(player.location.x, player.location.y);
+        calcDijkstra();
+        runTurn();
+    }
+
+    public void runTurn() {
+        freshAttackFields.clear();
+        scheduler.startTurn(player.location);
+        OrderedSet<Coord> creaturePositions = creatures.keysAsOrderedSet();
+        Coord[] pa = new Coord[]{player.location};
+        ArrayList<Coord> path = new ArrayList<>(9);
+        long end = timeline.now() + Timeline.actionTime(player);
+        Physical creature;
+        while ((creature = timeline.next(end)) != null) {
+            path.clear();
+            Coord c = creature.location;
+            if (creatures.get(c) != creature) { // it left the level without the timeline hearing about it
+                timeline.remove(creature);
+                scheduler.remove(creature);
+                map.statStore.detach(creature);
+                continue;
+            }
+            if (!scheduler.awake(creature)) {
+                timeline.schedule(creature, (long) scheduler.turnsUntilDue(c) * Timeline.actionTime(player));
+                continue;
+            }
+            listener.creatureUpdated(creature);
+            if (creature.stats.get(Stat.MOBILITY).actual() > 0
+                && map.lighting.colorLighting[0][player.location.x][player.location.y] > 0.1
+                && los.isReachable(map.lighting.resistances, c.x, c.y, player.location.x, player.location.y, Radius.CIRCLE)) {
+                Weapon weapon = chooseValidWeapon(creature, player);
+                creaturePositions.remove(c);
+                if (weapon == null && creature.weaponData != null) {
+                    AOE aoe = creature.weaponData.technique.aoe;
+                    ((StatefulRNG) monsterDijkstra.rng).setState(creature.location.hashCode() ^ (long) player.location.hashCode() << 32);
+                    if (aoe.getMinRange() <= 1) {
+                        Coord step = downhill(attackField(aoe.getMaxRange()), c);
+                        if (step != null) {
+                            path.add(step);
+                        }
+                    } else { // has to keep some distance, which the shared fields don't know about
+                        monsterDijkstra.reset();
+                        monsterDijkstra.findAttackPath(path, 1, aoe.getMinRange(), aoe.getMaxRange(), los, creaturePositions, null, c, pa);
+                    }
+                }
+                if (weapon == null && path.isEmpty()) {
+                    Coord next = c.translateCapped(creature.between(-1, 2), creature.between(-1, 2), map.width, map.height);
+                    if (!map.creatures.containsKey(next) && map.contents[next.x][next.y].blockage == null) {
+                        path.add(next);
+                    }
+                }
+                if (weapon != null) {
+                    creatureAttack(creature, weapon);
+                } else if (!path.isEmpty()) {
+                    Coord step = path.get(0);
+                    if (creature.creatureData != null
+                        && creature.creatureData.lastUsedItem != null
+                        && creature.creatureData.lastUsedItem.radiance != null) {
+                        creature.creatureData.lastUsedItem.radiance.flare = 0f;
+                    }
+                    if (map.contents[step.x][step.y].blockage == null && !creatures.containsKey(step) && creatures.alterAtCarefully(creatures.indexOf(c), step) != null) {
+                        map.remove(c.x, c.y, creature);
+                        creature.location = step;
+                        map.add(step.x, step.y, creature);
+                        listener.creatureMoved(creature, c, step);
+                    }
+                }
+                creaturePositions.add(creature.location);
+            }
+            timeline.schedule(creature, Timeline.actionTime(creature));
+        }
+        timeline.advance(end);
+
+        // Update all the stats in motion
+        changes.clear();
+        player.tickStats(changes);
+        listener.statsTicked(player, changes);
+        if (player.stats.get(Stat.VIGOR).actual() <= 0) {
+            listener.message("You are now dead with Vigor: " + player.stats.get(Stat.VIGOR).actual());
+            listener.playerDied();
+        }
+        listener.turnEnded();
+    }
+
+    /**
+     * Wakes every creature within radius of the given spot, both for the scheduler and on the timeline.
+     */
+    private void noise(Coord at, int radius) {
+        Physical creature;
+        for (int x = at.x - radius; x <= at.x + radius; x++) {
+            for (int y = at.y - radius; y <= at.y + radius; y++) {
+                if ((creature = creatures.get(Coord.get(x, y))) != null) {
+                    scheduler.wake(creature);
+                    timeline.wake(creature);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the distance to the nearest cell within maxRange of the player and in sight of the player, for every cell
+     * on the level, finding it only if this is the first time this turn it was needed.
+     */
+    private double[][] attackField(int maxRange) {
+        double[][] field = attackFields.get(maxRange);
+        if (field == null || field.length != map.width || field[0].length != map.height) {
+            field = new double[map.width][map.height];
+            attackFields.put(maxRange, field);
+        } else if (freshAttackFields.contains(maxRange)) {
+            return field;
+        }
+        freshAttackFields.add(maxRange);
+        monsterDijkstra.reset();
+        int px = player.location.x, py = player.location.y;
+        for (int x = Math.max(0, px - maxRange); x <= Math.min(map.width - 1, px + maxRange); x++) {
+            for (int y = Math.max(0, py - maxRange); y <= Math.min(map.height - 1, py + maxRange); y++) {
+                if ((x != px || y != py)
+                    && monsterDijkstra.physicalMap[x][y] < DijkstraMap.WALL
+                    && Radius.CIRCLE.radius(px, py, x, y) <= maxRange
+                    && los.isReachable(map.lighting.resistances, x, y, px, py, Radius.CIRCLE)) {
+                    monsterDijkstra.setGoal(x, y);
+                }
+            }
+        }
+        ArrayTools.insert(monsterDijkstra.scan(Collections.<Coord>emptySet()), field, 0, 0);
+        return field;
+    }
+
+    /**
+     * Finds the open cell next to start with the lowest distance in field, if it is lower than start's. Ties go to
+     * whichever the Dijkstra map's RNG starts looking at first.
+     */
+    private Coord downhill(double[][] field, Coord start) {
+        double best = field[start.x][start.y];
+        Coord next = null;
+        int first = monsterDijkstra.rng.nextInt(8);
+        for (int i = 0; i < 8; i++) {
+            Direction dir = Direction.OUTWARDS[first + i & 7];
+            int x = start.x + dir.deltaX, y = start.y + dir.deltaY;
+            if (x < 0 || y < 0 || x >= map.width || y >= map.height || field[x][y] >= best
+                || map.contents[x][y].blockage != null) {
+                continue;
+            }
+            Coord c = Coord.get(x, y);
+            if (!c.equals(player.location) && !creatures.containsKey(c)) {
+                best = field[x][y];
+                next = c;
+            }
+        }
+        return next;
+    }
+
+    private void creatureAttack(Physical creature, Weapon weapon) {
+        ActionOutcome ao = ActionOutcome.attack(creature, weapon, player);
+        Element element = ao.element;
+        if (ao.hit) {
+            int amt = ao.actualDamage >> 1;
+            applyStatChange(player, Stat.VIGOR, amt);
+        }
+        listener.attacked(creature, player, ao);
+        if (ao.hit) {
+            int amt = -(ao.actualDamage >> 1); // flip sign for output message
+            if (player.stats.get(Stat.VIGOR).actual() <= 0.0) {
+                if (ao.crit) {
+                    listener.message(Messaging.transform("The " + creature.name + " [Blood]brutally[] slay$ you with "
+                        + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
+                } else {
+                    listener.message(Messaging.transform("The " + creature.name + " slay$ you with "
+                        + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
+                }
+            } else {
+                if (ao.crit) {
+                    listener.message(Messaging.transform("The " + creature.name + "[CW Bright Orange] critically[] " + element.verb + " you for "
+                        + amt + " " + element.styledName + " damage!", player.name, Messaging.NounTrait.NO_GENDER));
+                } else {
+                    listener.message(Messaging.transform("The " + creature.name + " " + element.verb + " you for "
+                        + amt + " " + element.styledName + " damage!", creature.name, Messaging.NounTrait.NO_GENDER));
+                }
+                if (ao.targetConditioned) {
+                    listener.message(Messaging.transform("The " + creature.name + " "
+                        + ConditionBlueprint.CONDITIONS.getOrDefault(ao.targetCondition, ConditionBlueprint.CONDITIONS.randomValue(creature)).verb + " you with @my attack!", creature.name, Messaging.NounTrait.NO_GENDER));
+                    listener.conditioned(player);
+                }
+            }
+        } else {
+            if (ao.crit) {
+                listener.message("The " + creature.name + " missed you, but just barely.");
+            } else {
+                listener.message("The " + creature.name + " missed you.");
+            }
+        }
+    }
+
+    public void applyStatChange(Physical target, Stat stat, double amount) {
+        changes.clear();
+        changes.add(stat, amount);
+        target.stats.get(stat).addActual(amount);
+        target.rolloverStats(changes);
+
+        listener.statsChanged(target, changes);
+    }
+
+    /**
+     * Lights the area around the given viewer, usually the player, and updates what has been seen and remembered.
+     */
+    public void calcFOV(int checkX, int checkY) {
+        // creatures can change what they hold without their tile changing, so their cells are always rechecked
+        map.invalidate(player.location);
+        for (int i = 0; i < creatures.size(); i++) {
+            map.invalidate(creatures.keyAt(i));
+        }
+        // this is really important; it sets the resistances of the map's lighting and finds lights in changed cells
+        map.updateIndex();
+        map.lighting.calculateFOV(checkX, checkY,
+            checkX - 1 - (viewWidth >>> 1), checkY - 1 - (viewHeight >>> 1),
+            checkX + 1 + (viewWidth >>> 1), checkY + 1 + (viewHeight >>> 1));
+        FOV.addFOVsInto(map.lighting.fovResult, FOV.reuseFOV(map.lighting.resistances, map.lighting.tempFOV,
+            checkX, checkY, 4.0, Radius.CIRCLE));
+
+        boolean odin = debug.debugActive && debug.odinView;
+        if (odin) {
+            //choice of tempFOV is arbitrary; we just need a 2D array of all 0.6
+            ArrayTools.fill(map.lighting.tempFOV, 0.6);
+            //makes tempColorLighting filled with 0.6-strength white light
+            SColor.colorLightingInto(map.lighting.tempColorLighting, map.lighting.tempFOV, SColor.FLOAT_WHITE);
+            //mixes the full screen of 0.6-strength white light with existing lights
+            SColor.mixColoredLighting(map.lighting.colorLighting, map.lighting.tempColorLighting);
+            for (int x = 0; x < map.width; x++) {
+                for (int y = 0; y < map.height; y++) {
+                    //all of colorLighting will be lit now, so all of fovResult will have a value greater than 0.
+                    map.lighting.fovResult[x][y]
+                        = Math.max(0, Math.min(map.lighting.fovResult[x][y] + map.lighting.colorLighting[0][x][y], 1));
+                }
+            }
+            map.seen.allOn();
+        } else {
+            map.seen.or(map.tempSeen.refill(map.lighting.fovResult, 0.0001, Double.POSITIVE_INFINITY));
+        }
+
+        // only the window lit by calculateFOV above can be seen, unless odinView lit everything
+        int startX = odin ? 0 : Math.max(0, checkX - 1 - (viewWidth >>> 1)),
+            startY = odin ? 0 : Math.max(0, checkY - 1 - (viewHeight >>> 1)),
+            endX = odin ? map.width : Math.min(map.width, checkX + 2 + (viewWidth >>> 1)),
+            endY = odin ? map.height : Math.min(map.height, checkY + 2 + (viewHeight >>> 1));
+        for (int x = startX; x < endX; x++) {
+            for (int y = startY; y < endY; y++) {
+                if (map.lighting.fovResult[x][y] > 0) {
+                    if (map.remembered[x][y] == null) {
+                        map.remembered[x][y] = new RememberedTile(map.contents[x][y]);
+                    } else {
+                        map.remembered[x][y].remake(map.contents[x][y]);
+                    }
+                    if (odin) {
+                        map.remembered[x][y].seenInDebug = true;
+                    }
+                }
+            }
+        }
+        listener.visionChanged();
+    }
+
+    public void calcDijkstra() {
+        toPlayerDijkstra.clearGoals();
+        toPlayerDijkstra.resetMap();
+        monsterDijkstra.clearGoals();
+        monsterDijkstra.resetMap();
+        blockage.refill(map.lighting.fovResult, 0.0);
+        //blockage.fringe8way(); // seems like this is preventing the player from clicking into tiles they can see at the edge of light
+        toPlayerDijkstra.setGoal(player.location);
+        toPlayerDijkstra.scan(blockage);
+    }
+
+    public Weapon chooseValidWeapon(Physical attacker, Physical target) {
+        List<Weapon> weapons = validAttackOptions(attacker, target);
+        return weapons == null || weapons.isEmpty() ? null : rng.getRandomElement(weapons);
+    }
+
+    public List<Weapon> validAttackOptions(Physical attacker, Physical target) {
+        if (attacker == null || attacker.creatureData == null || attacker.creatureData.weaponChoices == null || target == null) {
+            return null;
+        }
+
+        Arrangement<Weapon> table = attacker.creatureData.weaponChoices.table;
+        List<Weapon> weapons = new ArrayList<>(table.keySet().size());
+        double range;
+        for (Weapon w : table.keySet()) {
+            range = Radius.CIRCLE.radius(attacker.location, target.location);
+            if ((w.shape == Weapon.ARC || w.shape == Weapon.BURST)) {
+                if (range < 2.5) {
+                    continue;
+                }
+                if (range <= w.rawWeapon.range + 2.5) {
+                    weapons.add(w);
+                }
+            } else if (range <= w.rawWeapon.range + 1.5) {
+                weapons.add(w);
+            }
+        }
+        return weapons;
+    }
+
+    /**
+     * The player attacks the target with a random weapon that can reach it.
+     */
+    public void attack(Physical target) {
+        attack(target, chooseValidWeapon(player, target));
+    }
+
+    /**
+     * The player attacks the target with the given weapon. This doesn't end the turn.
+     */
+    public void attack(Physical target, Weapon choice) {
+        int targetX = target.location.x, targetY = target.location.y;
+        if (target == player) {
+            listener.message("It's not wise to attack yourself!");
+            return;
+        }
+
+        ActionOutcome ao = ActionOutcome.attack(player, choice, target);
+        Element element = ao.element;
+        noise(target.location, 6);
+
+        calcFOV(player.location.x, player.location.y);
+        if (ao.hit) {
+            applyStatChange(target, Stat.VIGOR, ao.actualDamage);
+        }
+        listener.attacked(player, target, ao);
+
+        if (ao.hit) {
+            if (target.stats.get(Stat.VIGOR).actual() <= 0) {
+                creatures.remove(target.location);
+                scheduler.remove(target);
+                timeline.remove(target);
+                map.statStore.detach(target);
+                map.remove(targetX, targetY, target);
+                Stream.concat(target.physicalDrops.stream(), target.elementDrops.getOrDefault(element, new ArrayList<>(0)).stream())
+                    .map(table -> {
+                        int quantity = table.quantity();
+                        Physical p = RecipeMixer.buildPhysical(table.random());
+                        if (p.groupingData != null) {
+                            p.groupingData.quantity += quantity;
+                        } else {
+                            p.groupingData = new Grouping(quantity);
+                        }
+                        return p;
+                    })
+                    .forEach(item -> {
+                        if (item.attached) {
+                            return;
+                        }
+                        map.add(targetX, targetY, item);
+                        if (ao.crit) { // brutal kills scatter some of the drops
+                            int tx = Math.max(0, Math.min(targetX + player.between(-1, 2), map.width - 1)),
+                                ty = Math.max(0, Math.min(targetY + player.between(-1, 2), map.height - 1));
+                            if (map.lighting.resistances[tx][ty] < 0.9) {
+                                map.add(tx, ty, item);
+                            }
+                        }
+                    });
+                listener.killed(target, ao);
+                if (ao.crit) {
+                    listener.message("You [Blood]brutally[] defeat the " + target.name + " with " + -ao.actualDamage + " " + element.styledName + " damage!");
+                } else {
+                    listener.message("You defeat the " + target.name + " with " + -ao.actualDamage + " " + element.styledName + " damage!");
+                }
+            } else {
+                String amtText = String.valueOf(-ao.actualDamage);
+                if (ao.crit) {
+                    listener.message(Messaging.transform("You [CW Bright Orange]critically[] " + element.verb + " the " + target.name + " for "
+                        + amtText + " " + element.styledName + " damage!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
+                } else {
+                    listener.message(Messaging.transform("You " + element.verb + " the " + target.name + " for "
+                        + amtText + " " + element.styledName + " damage!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
+                }
+                if (ao.targetConditioned) {
+                    listener.message(Messaging.transform("You "
+                        + ConditionBlueprint.CONDITIONS.getOrDefault(ao.targetCondition, ConditionBlueprint.CONDITIONS.randomValue(player)).verb
+                        + " the " + target.name + " with your attack!", "you", Messaging.NounTrait.SECOND_PERSON_SINGULAR));
+                    listener.conditioned(target);
+                }
+            }
+        } else {
+            listener.message("Missed the " + target.name + (ao.crit ? ", but just barely." : "..."));
+        }
+    }
+
+    /**
+     * Moves the player if they aren't bumping into a wall or trying to go off the map somehow. Bumping into a creature
+     * attacks it, and bumping into something that can be used uses it. Either way, the turn then ends.
+     */
+    public void move(Direction dir) {
+        player.update();
+        listener.creatureUpdated(player);
+        int newX = player.location.x + dir.deltaX;
+        int newY = player.location.y + dir.deltaY;
+        Coord newPos = Coord.get(newX, newY);
+        if (!map.inBounds(newX, newY)) {
+            listener.message("You've reached the edge of the world, you can go no further.");
+            return;
+        }
+        if (map.contents[newX][newY].blockage == null) {
+            Coord from = player.location;
+            map.remove(from.x, from.y, player);
+            player.location = newPos;
+            map.add(newX, newY, player);
+            listener.playerMoved(player, from, newPos, this::endTurn);
+        } else {
+            Physical thing = map.contents[newX][newY].getCreature();
+            if (thing != null) {
+                listener.interrupted();
+                attack(thing);
+                endTurn();
+            } else if (!map.contents[newX][newY].contents.isEmpty()
+                && (thing = map.contents[newX][newY].contents.get(0)).interactableData != null
+                && !thing.interactableData.isEmpty()
+                && thing.interactableData.get(0).bumpAction) {
+                listener.interrupted();
+                thing.location = newPos; // total hack; needed by door-opening interaction
+                listener.message(Messaging.transform(thing.interactableData.get(0).interaction.interact(player, thing, this),
+                    player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
+                runTurn();
+            } else if ((thing = map.contents[newX][newY].getLargeNonCreature()) != null) {
+                listener.interrupted();
+                if (thing.interactableData != null && !thing.interactableData.isEmpty() && thing.interactableData.get(0).bumpAction) {
+                    thing.location = newPos; // total hack; needed by door-opening interaction
+                    listener.message(Messaging.transform(thing.interactableData.get(0).interaction.interact(player, thing, this),
+                        player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
+                } else {
+                    listener.message("Ran into " + thing.name);
+                }
+                runTurn();
+            } else {
+                runTurn();
+            }
+        }
+    }
+}
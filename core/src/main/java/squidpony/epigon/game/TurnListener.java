@@ -0,0 +1,92 @@
+package squidpony.epigon.game;
+
+import squidpony.epigon.combat.ActionOutcome;
+import squidpony.epigon.data.Physical;
+import squidpony.epigon.data.StatChanges;
+import squidpony.squidmath.Coord;
+
+/**
+ * Hears about everything that happens while a {@link TurnEngine} runs, so it can be shown. Every method does nothing
+ * by default, which is all a headless simulation needs.
+ */
+public interface TurnListener {
+
+    /**
+     * Some text for the player to read, which may have markup for {@link squidpony.squidgrid.gui.gdx.GDXMarkup}.
+     */
+    default void message(String text) {
+    }
+
+    /**
+     * The player did something that should stop any moves queued up ahead of time.
+     */
+    default void interrupted() {
+    }
+
+    /**
+     * The conditions on a creature (or the player) were just brought up to date, so some may have run out.
+     */
+    default void creatureUpdated(Physical creature) {
+    }
+
+    /**
+     * A creature has already moved from one cell to the next one over.
+     */
+    default void creatureMoved(Physical creature, Coord from, Coord to) {
+    }
+
+    /**
+     * The player has already moved from one cell to the next one over. The rest of the turn happens when finishTurn is
+     * run, which by default is right away; a display can instead run it once the move has been animated.
+     */
+    default void playerMoved(Physical player, Coord from, Coord to, Runnable finishTurn) {
+        finishTurn.run();
+    }
+
+    /**
+     * An attack happened and any damage from it has been applied, but the target hasn't been removed yet if it died.
+     */
+    default void attacked(Physical actor, Physical target, ActionOutcome outcome) {
+    }
+
+    /**
+     * A condition was put on the target by an attack.
+     */
+    default void conditioned(Physical target) {
+    }
+
+    /**
+     * The target died and was taken off the map; anything it dropped is already there.
+     */
+    default void killed(Physical target, ActionOutcome outcome) {
+    }
+
+    /**
+     * Stats were changed all at once, such as by damage. The changes are reused afterwards, so they should be copied if
+     * they need to be kept.
+     */
+    default void statsChanged(Physical target, StatChanges changes) {
+    }
+
+    /**
+     * Stats that change over time were moved along by a turn. The changes are reused afterwards, so they should be
+     * copied if they need to be kept.
+     */
+    default void statsTicked(Physical target, StatChanges changes) {
+    }
+
+    /**
+     * The lighting and field of view were calculated again, so what can be seen may be different.
+     */
+    default void visionChanged() {
+    }
+
+    default void playerDied() {
+    }
+
+    /**
+     * Everything in a turn has happened.
+     */
+    default void turnEnded() {
+    }
+}
@@ -64,6 +64,7 @@ public class ControlMapping {
             (int) ' ', PAUSE,
             (int) 'S' | CAPS, SAVE,
             (int) 'S' | CTRL, SAVE,
+            (int) 'L' | CAPS, LOAD,
             (int) 'T' | CAPS, TRY_AGAIN,
             (int) 't', TRY_AGAIN,
             (int) 'Q' | CAPS, QUIT,
@@ -108,6 +109,7 @@ public class ControlMapping {
             OPEN,
             SHUT,
             SAVE,
+            LOAD,
             QUIT,
             CLOSE_SCREEN
     );
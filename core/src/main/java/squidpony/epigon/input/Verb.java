@@ -41,6 +41,7 @@ public enum Verb {
     TRY_AGAIN("Start the game again after ending."),
     REST("Let a turn pass without doing anything."), // Does this allow more healing than WAIT?
     SAVE("Save the game."),
+    LOAD("Load the saved game, replacing the current one."),
     SHUT("For doors, \"Interact\" should be for container manipulation."), // If INTERACT is changed this also needs to change
     //THROW("If you have an item equipped, throw it at a target, otherwise grab a specific item or creature and attempt to throw it at a target."),
     USE_POWER("Use one of your available powers."),
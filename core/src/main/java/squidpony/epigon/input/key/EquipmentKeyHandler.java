@@ -88,7 +88,7 @@ public class EquipmentKeyHandler implements KeyHandler {
                         if (interaction.consumes) {
                             crawl.player.removeFromInventory(selected);
                         }
-                        crawl.message(Messaging.transform(interaction.interaction.interact(crawl.player, selected, crawl),
+                        crawl.message(Messaging.transform(interaction.interaction.interact(crawl.player, selected, crawl.engine),
                             crawl.player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
                         crawl.showingMenu = false;
                         crawl.menuLocation = null;
@@ -126,6 +126,7 @@ public class EquipmentKeyHandler implements KeyHandler {
                 break;
             case DROP:
                 crawl.map.contents[crawl.player.location.x][crawl.player.location.y].contents.add(crawl.player.removeFromInventory(crawl.mapOverlayHandler.getSelected()));
+                crawl.map.invalidate(crawl.player.location);
                 break;
             case INTERACT:
                 Physical selected = crawl.mapOverlayHandler.getSelected();
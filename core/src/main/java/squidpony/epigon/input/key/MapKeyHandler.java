@@ -110,6 +110,7 @@ public class MapKeyHandler implements KeyHandler {
                         RecipeMixer.applyModification(tile.blockage, crawl.dataStarter.openDoor);
                         tile.contents.add(tile.blockage);
                         tile.blockage = null;
+                        crawl.map.invalidate(c);
                     }
                 }
                 crawl.calcFOV(crawl.player.location.x, crawl.player.location.y);
@@ -135,6 +136,7 @@ public class MapKeyHandler implements KeyHandler {
                             RecipeMixer.applyModification(p, crawl.dataStarter.closeDoor);
                             tile.remove(p);
                             tile.blockage = p;
+                            crawl.map.invalidate(c);
                         }
                     }
                 }
@@ -157,6 +159,7 @@ public class MapKeyHandler implements KeyHandler {
                             crawl.player.addToInventory(p);
                             pickedUp.add(p);
                             it.remove();
+                            crawl.map.invalidate(c);
                         }
                     }
                 }
@@ -181,7 +184,7 @@ public class MapKeyHandler implements KeyHandler {
                     for (int i = 0, offset = crawl.player.next(3); i < 8; i++) {
                         Coord c = crawl.player.location.translate(Direction.OUTWARDS[i + offset & 7]);
                         if (crawl.map.inBounds(c) && crawl.map.lighting.fovResult[c.x][c.y] > 0) {
-                            crawl.map.contents[c.x][c.y].add(dropped);
+                            crawl.map.add(c.x, c.y, dropped);
                             break;
                         }
                     }
@@ -211,6 +214,12 @@ public class MapKeyHandler implements KeyHandler {
                 crawl.toCursor.clear();
                 crawl.crawlInput.setMouse(crawl.helpMouse);
                 break;
+            case SAVE:
+                crawl.saveGame();
+                break;
+            case LOAD:
+                crawl.loadGame();
+                break;
             case QUIT:
                 crawl.exit();
                 return;
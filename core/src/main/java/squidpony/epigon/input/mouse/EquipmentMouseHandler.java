@@ -34,7 +34,7 @@ public class EquipmentMouseHandler extends InputAdapter {
                 if (interaction.consumes) {
                     epigon.player.removeFromInventory(selected);
                 }
-                epigon.message(Messaging.transform(interaction.interaction.interact(epigon.player, selected, epigon),
+                epigon.message(Messaging.transform(interaction.interaction.interact(epigon.player, selected, epigon.engine),
                     epigon.player.name, Messaging.NounTrait.SECOND_PERSON_SINGULAR));
             }
             epigon.showingMenu = false;
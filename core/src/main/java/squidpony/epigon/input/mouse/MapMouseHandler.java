@@ -68,8 +68,8 @@ public class MapMouseHandler extends InputAdapter {
                 if (thing == null) {
                     if (epigon.toCursor.isEmpty()) {
                         epigon.cursor = Coord.get(worldX, worldY);
-                        ((StatefulRNG) epigon.toPlayerDijkstra.rng).setState(epigon.player.location.hashCode() ^ (long) epigon.cursor.hashCode() << 32);
-                        epigon.toPlayerDijkstra.findPathPreScanned(epigon.toCursor, epigon.cursor);
+                        ((StatefulRNG) epigon.engine.toPlayerDijkstra.rng).setState(epigon.player.location.hashCode() ^ (long) epigon.cursor.hashCode() << 32);
+                        epigon.engine.toPlayerDijkstra.findPathPreScanned(epigon.toCursor, epigon.cursor);
                         if (!epigon.toCursor.isEmpty()) {
                             epigon.toCursor.remove(0); // Remove cell you're in from list
                         }
@@ -144,8 +144,8 @@ public class MapMouseHandler extends InputAdapter {
 
         epigon.cursor = Coord.get(gridX, gridY);
         epigon.toCursor.clear();
-        ((StatefulRNG) epigon.toPlayerDijkstra.rng).setState(epigon.player.location.hashCode() ^ (long) epigon.cursor.hashCode() << 32);
-        epigon.toPlayerDijkstra.findPathPreScanned(epigon.toCursor, epigon.cursor);
+        ((StatefulRNG) epigon.engine.toPlayerDijkstra.rng).setState(epigon.player.location.hashCode() ^ (long) epigon.cursor.hashCode() << 32);
+        epigon.engine.toPlayerDijkstra.findPathPreScanned(epigon.toCursor, epigon.cursor);
         if (!epigon.toCursor.isEmpty()) {
             epigon.toCursor.remove(0);
         }
@@ -239,18 +239,19 @@ public class CastleGenerator {
                 if (noise > -0.1f && noise < 0.35f) {
                     tile = map.contents[c.x][c.y];
                     if (tile.floor.symbol == '.') {
-                        tile.floor = RecipeMixer.buildPhysical(handBuilt.grass);
+                        tile.floor = decorator.buildTerrain(handBuilt.grass);
                     }
 
-                    if (tile.floor.next(3) == 0 && (veggie = DataPool.instance().getVegetable(tile.floor.symbol, tile.floor)) != null) {
+                    // the floor may be shared by every grass tile, so its random state is left alone
+                    if (rng.next(3) == 0 && (veggie = DataPool.instance().getVegetable(tile.floor.symbol, rng)) != null) {
                         tile.contents.add(RecipeMixer.buildVegetable(veggie));
-                    } else if (tile.floor.next(8) < 9 && (treeBase = DataPool.instance().getTree(tile.floor.symbol, tile.floor)) != null) {    // 9 in 256 chance
+                    } else if (rng.next(8) < 9 && (treeBase = DataPool.instance().getTree(tile.floor.symbol, rng)) != null) {    // 9 in 256 chance
                         Physical tree = RecipeMixer.buildTree(treeBase);
                         tree.shuffle(Direction.OUTWARDS, dirs);
                         for (int i = 0; i < dirs.length && !tree.inventory.isEmpty(); i++) {
                             if (map.inBounds(c.x + dirs[i].deltaX, c.y + dirs[i].deltaY)
                                 && (map.contents[c.x + dirs[i].deltaX][c.y + dirs[i].deltaY].floor.symbol == '.' || map.contents[c.x + dirs[i].deltaX][c.y + dirs[i].deltaY].floor.symbol == '¸')) {
-                                map.contents[c.x + dirs[i].deltaX][c.y + dirs[i].deltaY].floor = RecipeMixer.buildPhysical(handBuilt.shadedGrass);
+                                map.contents[c.x + dirs[i].deltaX][c.y + dirs[i].deltaY].floor = decorator.buildTerrain(handBuilt.shadedGrass);
                                 map.contents[c.x + dirs[i].deltaX][c.y + dirs[i].deltaY].contents.add(tree.inventory.remove(0));
                             }
                         }
@@ -1,12 +1,16 @@
 package squidpony.epigon.mapping;
 
 import squidpony.epigon.data.Physical;
+import squidpony.epigon.data.StatStore;
 import squidpony.squidgrid.Radius;
 import squidpony.squidgrid.gui.gdx.LightingHandler;
+import squidpony.squidgrid.gui.gdx.Radiance;
 import squidpony.squidgrid.gui.gdx.SColor;
 import squidpony.squidgrid.mapping.DungeonUtility;
 import squidpony.squidmath.*;
 
+import java.util.ArrayList;
+
 import static squidpony.epigon.game.Epigon.rootChaos;
 
 /**
@@ -29,8 +33,27 @@ public class EpiMap {
     public GreasedRegion downStairPositions, upStairPositions;
     public StatefulRNG chaos;
     public OrderedMap<Coord, Physical> creatures;
+    /**
+     * Holds the stats of the creatures here while this is the level being played, so they can all be ticked at once.
+     */
+    public final StatStore statStore = new StatStore();
     public boolean populated;
 
+    /**
+     * Every region handed out by {@link #trackChanges()}; each one gets a cell turned on when that cell changes.
+     */
+    private final ArrayList<GreasedRegion> trackers = new ArrayList<>(4);
+
+    /**
+     * Cells whose opacity or light may have changed since the light and opacity index was last brought up to date.
+     */
+    private final GreasedRegion stale;
+
+    /**
+     * Cells whose entry in {@link #simple} may be out of date.
+     */
+    private final GreasedRegion staleSymbols;
+
     public EpiMap(int width, int height) {
         this.width = width;
         this.height = height;
@@ -46,6 +69,8 @@ public class EpiMap {
         seen = new GreasedRegion(width, height);
         tempSeen = new GreasedRegion(width, height);
         creatures = new OrderedMap<>();
+        stale = trackChanges();
+        staleSymbols = trackChanges();
     }
 
     public EpiMap() {
@@ -60,25 +85,105 @@ public class EpiMap {
         return x >= 0 && x < width && y >= 0 && y < height;
     }
 
-    public double[][] opacities() {
-        double[][] resistances = lighting.resistances;
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                resistances[x][y] = contents[x][y].opacity();
+    /**
+     * Starts tracking changes to this map for one consumer. The returned region has every cell on at first, since a new
+     * consumer has seen nothing yet; after that, any cell changed through this class is turned on again. The consumer
+     * should clear cells (or the whole region) once it has dealt with them, so its work stays proportional to what
+     * changed instead of to the size of the map.
+     *
+     * @return a GreasedRegion that will have a cell on for every change this consumer hasn't dealt with yet
+     */
+    public GreasedRegion trackChanges() {
+        GreasedRegion changes = new GreasedRegion(width, height).allOn();
+        trackers.add(changes);
+        return changes;
+    }
+
+    /**
+     * Stops updating a region previously returned by {@link #trackChanges()}.
+     */
+    public void stopTracking(GreasedRegion changes) {
+        for (int i = trackers.size() - 1; i >= 0; i--) {
+            if (trackers.get(i) == changes) {
+                trackers.remove(i);
             }
         }
-        return resistances;
+    }
+
+    /**
+     * Adds the given Physical to the tile at x,y and notes that the cell's opacity and light may have changed.
+     */
+    public void add(int x, int y, Physical phys) {
+        contents[x][y].add(phys);
+        invalidate(x, y);
+    }
+
+    /**
+     * Removes the given Physical from the tile at x,y and notes that the cell's opacity and light may have changed.
+     */
+    public void remove(int x, int y, Physical phys) {
+        contents[x][y].remove(phys);
+        invalidate(x, y);
+    }
+
+    /**
+     * Marks a cell as changed for everything tracking this map. Anything that changes a tile without going through
+     * {@link #add(int, int, Physical)} or {@link #remove(int, int, Physical)}, such as opening a door, should call this.
+     */
+    public void invalidate(int x, int y) {
+        for (int i = 0; i < trackers.size(); i++) {
+            trackers.get(i).insert(x, y);
+        }
+    }
+
+    public void invalidate(Coord c) {
+        invalidate(c.x, c.y);
+    }
+
+    /**
+     * Marks every cell as changed for everything tracking this map, such as after a generator rewrites the map.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < trackers.size(); i++) {
+            trackers.get(i).allOn();
+        }
+    }
+
+    /**
+     * Brings the resistances and lights in {@link #lighting} up to date. The first call looks at the whole map; after
+     * that only cells that were changed through this class or marked with {@link #invalidate(int, int)} are looked at.
+     */
+    public void updateIndex() {
+        for (Coord c : stale) {
+            updateCell(c.x, c.y);
+        }
+        stale.clear();
+    }
+
+    private void updateCell(int x, int y) {
+        lighting.resistances[x][y] = contents[x][y].opacity();
+        Radiance radiance = contents[x][y].getAnyRadiance();
+        if (radiance == null) {
+            lighting.lights.remove(Coord.get(x, y));
+        } else {
+            lighting.lights.put(Coord.get(x, y), radiance);
+        }
+    }
+
+    public double[][] opacities() {
+        updateIndex();
+        return lighting.resistances;
     }
 
     public char[][] simpleChars() {
         if (simple == null || simple.length != width || simple[0].length != height) {
             simple = new char[width][height];
+            staleSymbols.allOn();
         }
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                simple[x][y] = contents[x][y].getSymbol();
-            }
+        for (Coord c : staleSymbols) {
+            simple[c.x][c.y] = contents[c.x][c.y].getSymbol();
         }
+        staleSymbols.clear();
         line = DungeonUtility.hashesToLines(simple, true);
         return simple;
     }
@@ -4,6 +4,8 @@ import squidpony.epigon.GauntRNG;
 import squidpony.epigon.data.LiveValue;
 import squidpony.epigon.data.Physical;
 import squidpony.epigon.data.Stat;
+import squidpony.epigon.data.control.DataPool;
+import squidpony.epigon.data.control.RecipeMixer;
 import squidpony.squidgrid.gui.gdx.Radiance;
 import squidpony.squidgrid.gui.gdx.SColor;
 import squidpony.squidmath.NumberTools;
@@ -39,7 +41,31 @@ public class EpiTile {
         tintColor = DAWNBRINGER_AURORA[floor.next(8)].toEditedFloat(0f, -0.4f, -0.1f, 1f);
         tintAmount = floor.nextFloat() * GauntRNG.nextFloat(NumberTools.doubleToLongBits(tintColor)) * 0.6f;
     }
+
+    /**
+     * Makes a tile with the given floor, with its tint decided only by the given seed instead of by the floor's own
+     * random state, so the tile looks the same no matter what order tiles sharing that floor were made in.
+     */
+    public EpiTile(Physical floor, long seed)
+    {
+        this.floor = floor;
+        tintColor = DAWNBRINGER_AURORA[GauntRNG.next(seed, 8)].toEditedFloat(0f, -0.4f, -0.1f, 1f);
+        tintAmount = GauntRNG.nextFloat(seed + 1L) * GauntRNG.nextFloat(NumberTools.doubleToLongBits(tintColor)) * 0.6f;
+    }
     
+    /**
+     * Gets the floor of this tile in a form that can be changed without affecting any other tile. Floors are usually
+     * shared between many tiles, so a shared floor is copied into this tile before it is returned.
+     *
+     * @return the floor of this tile, now owned only by this tile, or null if there is no floor
+     */
+    public Physical editableFloor() {
+        if (floor != null && DataPool.instance().isShared(floor)) {
+            floor = RecipeMixer.buildPhysical(floor);
+        }
+        return floor;
+    }
+
     /**
      * Returns the total combined opacity of this cell, with 1.0 being fully opaque and 0.0 being
      * fully transparent.
@@ -101,7 +127,7 @@ public class EpiTile {
      */
     public float getBackgroundColor(int x, int y, long time) {
         return floor != null && floor.terrainData != null
-                        ? floor.terrainData.noise == null ? floor.terrainData.background : SColor.toEditedFloat(floor.terrainData.background, 0f, 0f, floor.terrainData.noise.getConfiguredNoise(x * 5f, y * 5f, time * 0x1p-7f) * 0.8f, 0f)
+                        ? floor.terrainData.animatedBackground(x, y, time)
                         : 0x1.fffffep-126f  // fully transparent, but not equal to 0 (0 is used to leave the current background)
                 ;
     }
@@ -0,0 +1,418 @@
+package squidpony.epigon.mapping;
+
+import squidpony.epigon.data.Physical;
+import squidpony.epigon.files.FileManager;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.squidmath.OrderedMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps only the most recently visited underground levels of a world in memory.
+ *
+ * Levels from {@link LocalAreaGenerator} come out the same every time they are built, so a level that falls out of use
+ * doesn't need to be kept whole. Only what happened to it after it was generated is held on to: the tiles that were
+ * changed, the creatures living there, and the player's memory of it, which is written to disk in a small binary form.
+ * When the player comes back, the level is built again and those changes are put back on top.
+ *
+ * Levels before the start index (the castle) are always kept, since they aren't made by the LocalAreaGenerator.
+ * With {@link #ALL} as the number of resident levels, nothing is ever unloaded and no changes are tracked.
+ */
+public class LevelCache {
+
+    /**
+     * The number of resident levels that keeps every level in memory once it is built.
+     */
+    public static final int ALL = 0;
+
+    private static final String levelPath = "Save/levels";
+
+    private final LocalAreaGenerator generator;
+    private final EpiMap[] world;
+    private final int start;
+    private final int resident;
+
+    /**
+     * Underground levels that are in memory, least recently visited first.
+     */
+    private final ArrayList<Integer> recent = new ArrayList<>();
+
+    /**
+     * For each level in memory, the cells that changed since it was built; these are what gets kept when it is unloaded.
+     */
+    private final GreasedRegion[] changes;
+
+    /**
+     * For each unloaded level, everything needed to put it back the way it was.
+     */
+    private final Stored[] stored;
+
+    /**
+     * What is kept of an unloaded level: the seed it is built again from, its state after it was built, the tiles that
+     * changed, and the creatures living there. Each stored tile only holds what goes in the tile with the same position
+     * when the level is built again, which keeps its own look.
+     */
+    public static class Stored {
+        public long seed, chaos;
+        public boolean populated;
+        /**
+         * True if the player's memory of the level was written to its own file when it was unloaded.
+         */
+        public boolean memory;
+        /**
+         * The player's memory of the level in the form its file holds, if it came from a saved game instead of a file.
+         */
+        public byte[] memoryBytes;
+        public OrderedMap<Coord, EpiTile> tiles = new OrderedMap<>();
+        public OrderedMap<Coord, Physical> creatures = new OrderedMap<>();
+    }
+
+    /**
+     * @param generator the generator that built (or will lazily build) the underground levels in world
+     * @param world     all levels, with the generator's levels starting at index start; unloaded levels will be null
+     * @param start     the index in world of level 0 of the generator
+     * @param resident  how many underground levels to keep in memory at once, or {@link #ALL} to keep all of them
+     */
+    public LevelCache(LocalAreaGenerator generator, EpiMap[] world, int start, int resident) {
+        this(generator, world, start, resident, true);
+    }
+
+    /**
+     * @param generator the generator that built (or will lazily build) the underground levels in world
+     * @param world     all levels, with the generator's levels starting at index start; unloaded levels will be null
+     * @param start     the index in world of level 0 of the generator
+     * @param resident  how many underground levels to keep in memory at once, or {@link #ALL} to keep all of them
+     * @param generated true if the underground levels already in world are just as the generator made them; false if
+     *                  they came from somewhere else, like a saved game, so all of each one must be kept when unloaded
+     */
+    public LevelCache(LocalAreaGenerator generator, EpiMap[] world, int start, int resident, boolean generated) {
+        this(generator, world, start, resident, generated, null);
+    }
+
+    /**
+     * @param generator the generator that built (or will lazily build) the underground levels in world
+     * @param world     all levels, with the generator's levels starting at index start; unloaded levels will be null
+     * @param start     the index in world of level 0 of the generator
+     * @param resident  how many underground levels to keep in memory at once, or {@link #ALL} to keep all of them
+     * @param generated true if the underground levels already in world are just as the generator made them; false if
+     *                  they came from somewhere else, like a saved game, so all of each one must be kept when unloaded
+     * @param saved     for each level that is null in world but was unloaded before, what was kept of it, such as from
+     *                  a saved game; may be null
+     */
+    public LevelCache(LocalAreaGenerator generator, EpiMap[] world, int start, int resident, boolean generated, Stored[] saved) {
+        this.generator = generator;
+        this.world = world;
+        this.start = start;
+        this.resident = resident <= ALL ? Integer.MAX_VALUE : resident;
+        changes = new GreasedRegion[world.length];
+        stored = new Stored[world.length];
+        if (saved != null) {
+            for (int i = start; i < world.length && i < saved.length; i++) {
+                if (world[i] == null) {
+                    stored[i] = saved[i];
+                }
+            }
+        }
+        // levels built ahead of time count as visited, with the shallowest ones the most recent
+        for (int i = world.length - 1; i >= start && keepsSome(); i--) {
+            if (world[i] != null) {
+                changes[i] = generated ? world[i].trackChanges().clear() : world[i].trackChanges();
+                recent.add(i);
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Checks whether the level at the given index is in memory right now.
+     */
+    public boolean isResident(int level) {
+        return world[level] != null;
+    }
+
+    /**
+     * Gets the level at the given index, building it if it was never built and restoring it if it was unloaded. This
+     * doesn't change which levels are kept in memory; use {@link #visit(int)} for the level the player is going to.
+     */
+    public EpiMap get(int level) {
+        EpiMap map = world[level];
+        if (map == null && level >= start) {
+            map = world[level] = generator.buildLevel(level - start);
+            if (keepsSome()) {
+                changes[level] = map.trackChanges().clear();
+            }
+            if (stored[level] != null) {
+                restore(map, level, stored[level]);
+                stored[level] = null;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * How many levels there are, in memory or not.
+     */
+    public int size() {
+        return world.length;
+    }
+
+    /**
+     * The index of the first level made by the generator.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Gets the level at the given index only if it is in memory, without building or restoring anything.
+     */
+    public EpiMap resident(int level) {
+        return world[level];
+    }
+
+    /**
+     * Gets what was kept of the level at the given index when it was unloaded, or null if it is in memory or was never
+     * built. This is what a saved game writes for such a level, instead of building the whole level again.
+     */
+    public Stored stored(int level) {
+        return stored[level];
+    }
+
+    /**
+     * Gets the player's memory of an unloaded level in the form its file holds, so it can be copied into a saved game,
+     * or null if there is none. The file is mapped rather than read onto the heap.
+     *
+     * @throws IOException if the level's memory file could not be read
+     */
+    public ByteBuffer storedMemory(int level) throws IOException {
+        Stored s = stored[level];
+        if (s == null) {
+            return null;
+        }
+        if (s.memoryBytes != null) {
+            return ByteBuffer.wrap(s.memoryBytes);
+        }
+        return s.memory ? FileManager.instance().mapFile(fileName(level), levelPath) : null;
+    }
+
+    /**
+     * Gets the level at the given index like {@link #get(int)}, then marks it as the most recently visited and unloads
+     * the least recently visited underground levels until only the allowed number are left in memory.
+     */
+    public EpiMap visit(int level) {
+        EpiMap map = get(level);
+        if (level >= start && keepsSome()) {
+            recent.remove(Integer.valueOf(level));
+            recent.add(level);
+            trim();
+        }
+        return map;
+    }
+
+    /**
+     * False if every level stays in memory, so there is no need to know what changed or which was visited last.
+     */
+    private boolean keepsSome() {
+        return resident != Integer.MAX_VALUE;
+    }
+
+    private void trim() {
+        // the last entry is the level being visited, which always stays
+        for (int i = 0; recent.size() > resident && i < recent.size() - 1; ) {
+            if (unload(recent.get(i))) {
+                recent.remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private boolean unload(int level) {
+        EpiMap map = world[level];
+        Stored s = new Stored();
+        s.seed = generator.levelSeed(level - start);
+        s.chaos = map.chaos.getState();
+        s.populated = map.populated;
+        s.creatures = map.creatures;
+        for (Coord c : changes[level]) {
+            s.tiles.put(c, map.contents[c.x][c.y]);
+        }
+        if (map.seen.notEmpty()) {
+            try {
+                FileManager.instance().writeStream(fileName(level), levelPath, out -> compactMemory(map, out));
+            } catch (IOException ex) {
+                System.out.println("Could not write level memory: " + ex.getLocalizedMessage());
+                return false; // can't lose what the player remembers, so keep the whole level instead
+            }
+            s.memory = true;
+        }
+        // the map and its store are dropped, so the creatures kept for later need their stats back in their LiveValues
+        for (int i = 0; i < map.creatures.size(); i++) {
+            map.statStore.detach(map.creatures.getAt(i));
+        }
+        map.stopTracking(changes[level]);
+        changes[level] = null;
+        stored[level] = s;
+        world[level] = null;
+        generator.forgetLevel(level - start);
+        return true;
+    }
+
+    private void restore(EpiMap map, int level, Stored s) {
+        if (s.seed != generator.levelSeed(level - start)) {
+            System.out.println("Level " + level + " was kept from a different world; its changes were lost.");
+            return;
+        }
+        map.chaos.setState(s.chaos);
+        map.populated = s.populated;
+        map.creatures = s.creatures;
+        for (int i = 0; i < s.tiles.size(); i++) {
+            Coord c = s.tiles.keyAt(i);
+            EpiTile kept = s.tiles.getAt(i), tile = map.contents[c.x][c.y];
+            tile.floor = kept.floor;
+            tile.blockage = kept.blockage;
+            tile.contents = kept.contents;
+            map.invalidate(c);
+        }
+        if (s.memory || s.memoryBytes != null) {
+            boolean remembered = false;
+            try (InputStream in = s.memoryBytes != null ? new ByteArrayInputStream(s.memoryBytes)
+                : FileManager.instance().openFile(fileName(level), levelPath)) {
+                remembered = expandMemory(map, in);
+            } catch (IOException ex) {
+                System.out.println("Could not read level memory: " + ex.getLocalizedMessage());
+            }
+            if (!remembered) {
+                System.out.println("Memory of level " + level + " was lost.");
+            }
+            if (s.memory) {
+                try {
+                    FileManager.instance().deleteFile(fileName(level), levelPath);
+                } catch (IOException ex) {
+                    System.out.println("Could not delete level memory: " + ex.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    private static String fileName(int level) {
+        return "level" + level + ".bin";
+    }
+
+    private static void compactMemory(EpiMap map, OutputStream stream) throws IOException {
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream compressed = new DeflaterOutputStream(stream, deflater);
+            DataOutputStream out = new DataOutputStream(compressed);
+            out.writeInt(map.width);
+            out.writeInt(map.height);
+            writeMemory(map, out);
+            out.flush();
+            compressed.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean expandMemory(EpiMap map, InputStream stream) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream in = new DataInputStream(new InflaterInputStream(stream, inflater));
+            if (in.readInt() != map.width || in.readInt() != map.height) {
+                return false;
+            }
+            readMemory(map, in);
+        } finally {
+            inflater.end();
+        }
+        return true;
+    }
+
+    /**
+     * Writes which cells of the map were seen and how each remembered cell looked. Each set of cells is a bitset over
+     * the map, and only the remembered cells have anything more written for them.
+     */
+    public static void writeMemory(EpiMap map, DataOutputStream out) throws IOException {
+        BitSet remembered = new BitSet(map.width * map.height);
+        for (int x = 0; x < map.width; x++) {
+            for (int y = 0; y < map.height; y++) {
+                if (map.remembered[x][y] != null) {
+                    remembered.set(x * map.height + y);
+                }
+            }
+        }
+        writeRegion(map.seen, out);
+        writeBits(out, remembered);
+        for (int i = remembered.nextSetBit(0); i >= 0; i = remembered.nextSetBit(i + 1)) {
+            RememberedTile rt = map.remembered[i / map.height][i % map.height];
+            out.writeChar(rt.symbol);
+            out.writeFloat(rt.front);
+            out.writeFloat(rt.back);
+            out.writeFloat(rt.miniMapColor);
+            out.writeBoolean(rt.seenInDebug);
+        }
+    }
+
+    /**
+     * Reads what {@link #writeMemory(EpiMap, DataOutputStream)} wrote into the given map, which must be the same size.
+     */
+    public static void readMemory(EpiMap map, DataInputStream in) throws IOException {
+        readRegion(map.seen, in);
+        BitSet remembered = readBits(in);
+        for (int i = remembered.nextSetBit(0); i >= 0; i = remembered.nextSetBit(i + 1)) {
+            RememberedTile rt = new RememberedTile(in.readChar(), in.readFloat(), in.readFloat(), in.readFloat());
+            rt.seenInDebug = in.readBoolean();
+            map.remembered[i / map.height][i % map.height] = rt;
+        }
+    }
+
+    /**
+     * Writes the cells of a region as a bitset, in the same layout as {@link #writeMemory(EpiMap, DataOutputStream)}.
+     */
+    public static void writeRegion(GreasedRegion region, DataOutputStream out) throws IOException {
+        BitSet bits = new BitSet(region.width * region.height);
+        for (Coord c : region) {
+            bits.set(c.x * region.height + c.y);
+        }
+        writeBits(out, bits);
+    }
+
+    /**
+     * Reads cells written by {@link #writeRegion(GreasedRegion, DataOutputStream)} into the given region.
+     */
+    public static void readRegion(GreasedRegion region, DataInputStream in) throws IOException {
+        BitSet bits = readBits(in);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            region.insert(i / region.height, i % region.height);
+        }
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] longs = bits.toLongArray();
+        out.writeInt(longs.length);
+        for (long l : longs) {
+            out.writeLong(l);
+        }
+    }
+
+    private static BitSet readBits(DataInputStream in) throws IOException {
+        long[] longs = new long[in.readInt()];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = in.readLong();
+        }
+        return BitSet.valueOf(longs);
+    }
+}
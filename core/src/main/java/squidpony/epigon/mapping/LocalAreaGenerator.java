@@ -1,5 +1,6 @@
 package squidpony.epigon.mapping;
 
+import squidpony.epigon.data.EpiData;
 import squidpony.epigon.data.Physical;
 import squidpony.epigon.data.control.DataPool;
 import squidpony.epigon.data.control.DataStarter;
@@ -10,10 +11,11 @@ import squidpony.epigon.data.quality.Vegetable;
 import squidpony.squidgrid.Direction;
 import squidpony.squidgrid.mapping.*;
 import squidpony.squidgrid.mapping.styled.TilesetType;
-import squidpony.squidmath.Coord;
-import squidpony.squidmath.FastNoise;
-import squidpony.squidmath.GreasedRegion;
-import squidpony.squidmath.StatefulRNG;
+import squidpony.squidmath.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 /**
  * Creates a localized area in the world.
@@ -26,180 +28,360 @@ public class LocalAreaGenerator {
     private MapDecorator decorator;
     private StatefulRNG rng;
 
+    private FastNoise noise, ridge;
+    private Physical[] floors;
+    private float diversity, halfway;
+
+    /**
+     * One seed per level, drawn up front; everything about a level is decided by its seed and the seeds of the levels
+     * next to it.
+     */
+    private long[] levelSeeds;
+    /**
+     * The start of the EpiData idHash blocks set aside for this world, one block per level.
+     */
+    private int idBlocks;
+    /**
+     * Dungeon chars for levels whose layout was generated but that haven't been built yet.
+     */
+    private char[][][] layouts;
+    /**
+     * The floors each level's layout left bare, used to place stairs between levels.
+     */
+    private GreasedRegion[] layoutFloors;
+    /**
+     * Where stairs go between each level and the one below it, once known.
+     */
+    private GreasedRegion[] stairs;
+    private GreasedRegion[] parity;
+
     public LocalAreaGenerator(MapDecorator decorator) {
         this.decorator = decorator;
         dataStarter = decorator.dataStarter;
     }
 
+    /**
+     * Builds every level of the world, using the common ForkJoinPool to build levels in parallel.
+     */
     public EpiMap[] buildWorld(int width, int height, int depth) {
-        init(width, height, depth);
-
-        noiseMap();
+        return buildWorld(width, height, depth, ForkJoinPool.commonPool());
+    }
 
-        makeSolid();
+    /**
+     * Builds every level of the world, with levels built in parallel on the given pool. The result is the same for a
+     * given seed no matter how many threads the pool has, and the levels are the same as building each level of
+     * {@link #buildLazyWorld(int, int, int)} with {@link #buildLevel(int)}, given the same idHash blocks. Layouts are
+     * generated in parallel first, then where the stairs go is found in one serial pass, then each level is built in parallel.
+     */
+    public EpiMap[] buildWorld(int width, int height, int depth, ForkJoinPool pool) {
+        return buildWorld(width, height, depth, pool, EpiData.reserveIdBlocks(depth, idBlockSize(width, height)));
+    }
 
-        EpiTile tile;
-        GreasedRegion[] floorWorld = new GreasedRegion[depth];
-        GreasedRegion tmp = new GreasedRegion(width, height);
+    /**
+     * How many idHash values each level of the given size gets, enough for a few EpiData on every cell, but never fewer
+     * than {@link EpiData#ID_BLOCK}.
+     */
+    public static int idBlockSize(int width, int height) {
+        return Math.max(EpiData.ID_BLOCK, width * height * 4);
+    }
 
+    /**
+     * Builds every level of the world in parallel like {@link #buildWorld(int, int, int, ForkJoinPool)}, but gives
+     * the EpiData made for each level idHash values from blocks that were already set aside. Building twice with the
+     * same idBlocks makes two worlds with nothing at all different between them, which is only useful to check that
+     * generation is deterministic; the two worlds must not be used together in one game.
+     *
+     * @param idBlocks the result of {@link EpiData#reserveIdBlocks(int, int)} given depth and
+     *                 {@link #idBlockSize(int, int)}
+     */
+    public EpiMap[] buildWorld(int width, int height, int depth, ForkJoinPool pool, int idBlocks) {
+        prepare(width, height, depth);
+        this.idBlocks = idBlocks;
+        runLevels(pool, e -> layouts[e] = generateLayout(e));
+        for (int e = 0; e < depth - 1; e++) {
+            linkingStairs(e);
+        }
+        // EpiMap takes from a shared RNG when made, so these are made in order on this thread
         for (int e = 0; e < depth; e++) {
-            EpiMap eMap = world[e];
-            SectionDungeonGenerator gen = new SectionDungeonGenerator(width, height, rng);
-            // create vertical "zones" for types of generation
-            if (e < 2) {
-//                DenseRoomMapGenerator dense = new DenseRoomMapGenerator(width, height, rng);
-                gen.addDoors(40, true);
-                gen.addGrass(-1, 5);
-                gen.addWater(-1, 7);
-                gen.generate(TilesetType.DEFAULT_DUNGEON);
-            } else if (e < 4) {
-                FlowingCaveGenerator flowing = new FlowingCaveGenerator(width, height, TilesetType.DEFAULT_DUNGEON, rng);
-                gen.addBoulders(DungeonUtility.CAVE_FLOOR, 8);
-                gen.addWater(DungeonUtility.CAVE_FLOOR, 14, 4);
-                gen.addGrass(DungeonUtility.CAVE_FLOOR, 23);
-                gen.generate(flowing.generate(), flowing.environment);
-            } else {
-                SerpentMapGenerator serpent = new SerpentMapGenerator(width, height, rng, 0.2);
-                serpent.putWalledBoxRoomCarvers(4);
-                serpent.putWalledRoundRoomCarvers(2);
-                serpent.putCaveCarvers(1);
-                gen.addLake(20);
-                gen.addWater(DungeonUtility.CAVE_FLOOR, 25, 5);
-                gen.addGrass(DungeonUtility.ROOM_FLOOR, 10);
-                gen.addGrass(DungeonUtility.CORRIDOR_FLOOR, 15);
-                gen.addDoors(10, false);
-                gen.generate(serpent.generate(), serpent.getEnvironment());
-            }
-
-            char[][] dungeonChars = gen.getDungeon();
-            floorWorld[e] = new GreasedRegion(gen.getBareDungeon(), '.');
-            Direction[] dirs = new Direction[8];
-            Vegetable veggie;
-            Tree treeBase;
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    char c = dungeonChars[x][y];
-                    tile = eMap.contents[x][y];
-                    tile.blockage = null;
-                    switch (c) {
-                        case '.':
-                            break;
-                        case '#':
-                            decorator.placeWall(tile);
-                            break;
-                        case '+':
-                        case '/':
-                            decorator.placeDoor(tile);
-                            break;
-                        case '~': // TODO - distinguish deep water
-                        case ',':
-//                            decorator.placeLava(tile);
-                            decorator.placeWater(tile);
-                            break;
-                        case '&': // should never occur naturally
-                            break;
-                        default:
-                            tile.floor = RecipeMixer.buildPhysical(tile.floor); // Copy out the old floor before modifying it
-                            tile.floor.symbol = eMap.altSymbolOf(c);
-                            tile.floor.color = eMap.colorOf(c);
-                            tile.floor.name = "modified " + c;
-                            break;
-                    }
-
-                    if (tile.floor.next(5) == 0 && (veggie = DataPool.instance().getVegetable(tile.floor.symbol, tile.floor)) != null) {// 1 in 32 chance
-                        tile.contents.add(RecipeMixer.buildVegetable(veggie));
-                    } else if (tile.floor.next(8) < 3 && (treeBase = DataPool.instance().getTree(tile.floor.symbol, tile.floor)) != null) {    // 3 in 256 chance
-                        Physical tree = RecipeMixer.buildTree(treeBase);
-                        tree.shuffle(Direction.OUTWARDS, dirs);
-                        for (int i = 0; i < dirs.length && !tree.inventory.isEmpty(); i++) {
-                            if (eMap.inBounds(x + dirs[i].deltaX, y + dirs[i].deltaY)
-                                && (dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] == '.' || dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] == '"')) {
-                                dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] = '&';
-                                eMap.contents[x + dirs[i].deltaX][y + dirs[i].deltaY].floor = RecipeMixer.buildPhysical(dataStarter.shadedGrass);
-                                eMap.contents[x + dirs[i].deltaX][y + dirs[i].deltaY].contents.add(tree.inventory.remove(0));
-                            }
-                        }
-                        tile.contents.add(tree);
-                    }
-                }
-            }
+            world[e] = new EpiMap(width, height);
         }
+        runLevels(pool, e -> fillLevel(world[e], e));
+        return world;
+    }
 
-        for (int e = 0; e < depth - 1; e++) {
-            EpiMap eMap = world[e];
-            EpiMap nextMap = world[e + 1];
-            tmp.remake(floorWorld[e]).and(floorWorld[e + 1]).randomScatter(rng, 21, 4);
-            eMap.downStairPositions.or(tmp);
-            nextMap.upStairPositions.or(tmp);
-            for (Coord c : tmp) {
-                decorator.placeStairs(eMap, nextMap, c);
-            }
-            floorWorld[e].andNot(tmp);
-            floorWorld[e + 1].andNot(tmp);
-        }
-        for (int e = 1; e < depth; e++) {
-            EpiMap eMap = world[e];
-            EpiMap prevMap = world[e - 1];
-            tmp.remake(floorWorld[e]).and(floorWorld[e - 1]).randomScatter(rng, 21, 4);
-            eMap.upStairPositions.or(tmp);
-            prevMap.downStairPositions.or(tmp);
-            for (Coord c : tmp) {
-                decorator.placeStairs(prevMap, eMap, c);
-            }
-            floorWorld[e].andNot(tmp);
-            floorWorld[e - 1].andNot(tmp);
-        }
+    /**
+     * Prepares a world where no level is built until {@link #buildLevel(int)} asks for it. Every level gets its own seed
+     * up front, and a level's layout, decoration, and the stairs to its neighbors depend only on those seeds, so the
+     * world is the same no matter what order levels are visited in. Stairs between two levels only go on cells where
+     * both levels have floor and x + y has the same parity as the upper level, so a cell never needs stairs going both
+     * up and down.
+     *
+     * @return an array of depth null items, to be filled in by {@link #buildLevel(int)}
+     */
+    public EpiMap[] buildLazyWorld(int width, int height, int depth) {
+        return buildLazyWorld(width, height, depth, EpiData.reserveIdBlocks(depth, idBlockSize(width, height)));
+    }
 
+    /**
+     * Prepares a lazily-built world like {@link #buildLazyWorld(int, int, int)}, but with idHash blocks that were already
+     * set aside; see {@link #buildWorld(int, int, int, ForkJoinPool, int)} for when that is useful.
+     */
+    public EpiMap[] buildLazyWorld(int width, int height, int depth, int idBlocks) {
+        prepare(width, height, depth);
+        this.idBlocks = idBlocks;
         return world;
     }
 
-    private void init(int width, int height, int depth) {
+    private void prepare(int width, int height, int depth) {
         this.width = width;
         this.height = height;
         this.depth = depth;
         rng = dataStarter.rng.copy();
         rng.setState(1000L);
         world = new EpiMap[depth];
+        prepareNoise();
+        levelSeeds = new long[depth];
+        for (int e = 0; e < depth; e++) {
+            levelSeeds[e] = rng.nextLong();
+        }
+        layouts = new char[depth][][];
+        layoutFloors = new GreasedRegion[depth];
+        stairs = new GreasedRegion[depth];
+        parity = new GreasedRegion[]{new GreasedRegion(width, height), new GreasedRegion(width, height)};
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                parity[x + y & 1].insert(x, y);
+            }
+        }
+    }
+
+    /**
+     * The seed the given level is built from, which together with the seeds of the levels next to it decides everything
+     * about that level.
+     */
+    public long levelSeed(int level) {
+        return levelSeeds[level];
+    }
+
+    /**
+     * Checks whether the given level of a world from {@link #buildLazyWorld(int, int, int)} has been built yet.
+     */
+    public boolean isBuilt(int level) {
+        return world[level] != null;
+    }
 
-        for (int d = 0; d < depth; d++) {
-            world[d] = new EpiMap(width, height);
+    /**
+     * Builds one level of a world made by {@link #buildLazyWorld(int, int, int)}, or returns it if it was already built.
+     * The layouts of the levels above and below are generated too if needed, so stairs can be placed, but only their
+     * layouts are kept until they are built themselves.
+     *
+     * @param level the depth of the level to build, starting at 0
+     * @return the built EpiMap, which is also stored in the world array
+     */
+    public EpiMap buildLevel(int level) {
+        if (world[level] != null) {
+            return world[level];
+        }
+        for (int e = Math.max(0, level - 1); e <= level + 1 && e < depth; e++) {
+            if (layoutFloors[e] == null || (e == level && layouts[e] == null)) {
+                layouts[e] = generateLayout(e);
+            }
+        }
+        if (level > 0) {
+            linkingStairs(level - 1);
         }
+        if (level < depth - 1) {
+            linkingStairs(level);
+        }
+        EpiMap eMap = new EpiMap(width, height);
+        fillLevel(eMap, level);
+        world[level] = eMap;
+        return eMap;
+    }
+
+    /**
+     * Drops this generator's reference to a built level so it can be garbage collected once nothing else uses it. A
+     * later call to {@link #buildLevel(int)} makes the level again, exactly as it was first generated.
+     */
+    public void forgetLevel(int level) {
+        world[level] = null;
+    }
+
+    private void runLevels(ForkJoinPool pool, IntConsumer work) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[depth];
+        for (int e = 0; e < depth; e++) {
+            final int level = e;
+            tasks[e] = pool.submit(() -> work.accept(level));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Finds where stairs go between upper and the level below it, if that isn't known yet.
+     */
+    private void linkingStairs(int upper) {
+        if (stairs[upper] == null) {
+            stairs[upper] = new GreasedRegion(layoutFloors[upper]).and(layoutFloors[upper + 1]).and(parity[upper & 1])
+                .randomScatter(levelRNG(upper, 2L), 21, 8);
+        }
+    }
+
+    private StatefulRNG levelRNG(int level, long stream) {
+        return new StatefulRNG(new DiverRNG(DiverRNG.determine(levelSeeds[level] + stream * 0x9E3779B97F4A7C15L)));
     }
 
     /**
-     * Makes every block contain a full wall. Should be called after floor manipulations are done to have walls match
-     * the floor under them.
+     * Builds all the tiles of one level from its layout and the stairs to its neighbors. Only touches this level and
+     * shared data that is safe to use from more than one thread, so levels can be built in parallel.
      */
-    private void makeSolid() {
+    private void fillLevel(EpiMap eMap, int level) {
+        EpiData.useIdBlock(idBlocks, level, idBlockSize(width, height));
+        try {
+            eMap.chaos.setState(levelSeeds[level]);
+            StatefulRNG levelRNG = levelRNG(level, 1L);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    Physical floor = floors[Math.round(halfway + (diversity * noise.getConfiguredNoise(x, y, level + ridge.getConfiguredNoise(x, y, level) * 0.5f)))];
+                    EpiTile tile = eMap.contents[x][y] = new EpiTile(floor, levelRNG.nextLong());
+                    tile.add(DataPool.instance().getWall(floor.terrainData.stone));
+                }
+            }
+            carve(eMap, layouts[level], levelRNG);
+            layouts[level] = null;
+            if (level > 0) {
+                eMap.upStairPositions.or(stairs[level - 1]);
+                for (Coord c : stairs[level - 1]) {
+                    decorator.placeStairs(eMap.contents[c.x][c.y], true);
+                }
+            }
+            if (level < depth - 1) {
+                eMap.downStairPositions.or(stairs[level]);
+                for (Coord c : stairs[level]) {
+                    decorator.placeStairs(eMap.contents[c.x][c.y], false);
+                }
+            }
+        } finally {
+            EpiData.useSharedIds();
+        }
+    }
+
+    /**
+     * Runs the dungeon generator for one level with that level's own RNG, storing its bare floors in
+     * {@link #layoutFloors}.
+     *
+     * @return the dungeon chars for the level, which {@link #carve(EpiMap, char[][], IRNG)} turns into tiles
+     */
+    private char[][] generateLayout(int e) {
+        StatefulRNG rng = levelRNG(e, 0L);
+        SectionDungeonGenerator gen = new SectionDungeonGenerator(width, height, rng);
+        // create vertical "zones" for types of generation
+        if (e < 2) {
+//            DenseRoomMapGenerator dense = new DenseRoomMapGenerator(width, height, rng);
+            gen.addDoors(40, true);
+            gen.addGrass(-1, 5);
+            gen.addWater(-1, 7);
+            gen.generate(TilesetType.DEFAULT_DUNGEON);
+        } else if (e < 4) {
+            FlowingCaveGenerator flowing = new FlowingCaveGenerator(width, height, TilesetType.DEFAULT_DUNGEON, rng);
+            gen.addBoulders(DungeonUtility.CAVE_FLOOR, 8);
+            gen.addWater(DungeonUtility.CAVE_FLOOR, 14, 4);
+            gen.addGrass(DungeonUtility.CAVE_FLOOR, 23);
+            gen.generate(flowing.generate(), flowing.environment);
+        } else {
+            SerpentMapGenerator serpent = new SerpentMapGenerator(width, height, rng, 0.2);
+            serpent.putWalledBoxRoomCarvers(4);
+            serpent.putWalledRoundRoomCarvers(2);
+            serpent.putCaveCarvers(1);
+            gen.addLake(20);
+            gen.addWater(DungeonUtility.CAVE_FLOOR, 25, 5);
+            gen.addGrass(DungeonUtility.ROOM_FLOOR, 10);
+            gen.addGrass(DungeonUtility.CORRIDOR_FLOOR, 15);
+            gen.addDoors(10, false);
+            gen.generate(serpent.generate(), serpent.getEnvironment());
+        }
+        layoutFloors[e] = new GreasedRegion(gen.getBareDungeon(), '.');
+        return gen.getDungeon();
+    }
+
+    /**
+     * Turns dungeon chars into walls, doors, water, and decorated floors, and scatters vegetation and trees.
+     */
+    private void carve(EpiMap eMap, char[][] dungeonChars, IRNG rng) {
+        EpiTile tile;
+        Direction[] dirs = new Direction[8];
+        Vegetable veggie;
+        Tree treeBase;
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                for (int z = 0; z < depth; z++) {
-                    EpiTile tile = world[z].contents[x][y];
-                    tile.add(DataPool.instance().getWall(tile.floor.terrainData.stone));
+                char c = dungeonChars[x][y];
+                tile = eMap.contents[x][y];
+                tile.blockage = null;
+                switch (c) {
+                    case '.':
+                        break;
+                    case '#':
+                        decorator.placeWall(tile);
+                        break;
+                    case '+':
+                    case '/':
+                        decorator.placeDoor(tile, rng);
+                        break;
+                    case '~': // TODO - distinguish deep water
+                    case ',':
+//                        decorator.placeLava(tile);
+                        decorator.placeWater(tile);
+                        break;
+                    case '&': // should never occur naturally
+                        break;
+                    default:
+                        if (decorator.flyweightTerrain && tile.floor.terrainData != null && tile.floor.terrainData.stone != null) {
+                            tile.floor = DataPool.instance().getFloor(tile.floor.terrainData.stone, eMap.altSymbolOf(c), eMap.colorOf(c));
+                        } else {
+                            Physical floor = tile.editableFloor(); // Copy out the old floor before modifying it
+                            floor.symbol = eMap.altSymbolOf(c);
+                            floor.color = eMap.colorOf(c);
+                            floor.name = "modified " + c;
+                        }
+                        break;
+                }
+
+                if (rng.next(5) == 0 && (veggie = DataPool.instance().getVegetable(tile.floor.symbol, rng)) != null) {// 1 in 32 chance
+                    tile.contents.add(RecipeMixer.buildVegetable(veggie));
+                } else if (rng.next(8) < 3 && (treeBase = DataPool.instance().getTree(tile.floor.symbol, rng)) != null) {    // 3 in 256 chance
+                    Physical tree = RecipeMixer.buildTree(treeBase);
+                    rng.shuffle(Direction.OUTWARDS, dirs);
+                    for (int i = 0; i < dirs.length && !tree.inventory.isEmpty(); i++) {
+                        if (eMap.inBounds(x + dirs[i].deltaX, y + dirs[i].deltaY)
+                            && (dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] == '.' || dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] == '"')) {
+                            dungeonChars[x + dirs[i].deltaX][y + dirs[i].deltaY] = '&';
+                            eMap.contents[x + dirs[i].deltaX][y + dirs[i].deltaY].floor = decorator.buildTerrain(dataStarter.shadedGrass);
+                            eMap.contents[x + dirs[i].deltaX][y + dirs[i].deltaY].contents.add(tree.inventory.remove(0));
+                        }
+                    }
+                    tile.contents.add(tree);
                 }
             }
         }
     }
 
-    private void noiseMap() {
-        FastNoise noise = new FastNoise(rng.nextInt(), 0.025f, FastNoise.SIMPLEX_FRACTAL, 2),
-            ridge = new FastNoise(rng.nextInt(), 0.035f, FastNoise.SIMPLEX_FRACTAL, 3);
+    private void prepareNoise() {
+        noise = new FastNoise(rng.nextInt(), 0.025f, FastNoise.SIMPLEX_FRACTAL, 2);
+        ridge = new FastNoise(rng.nextInt(), 0.035f, FastNoise.SIMPLEX_FRACTAL, 3);
         ridge.setFractalType(FastNoise.RIDGED_MULTI);
-        EpiMap map;
         Stone[] stones = rng.shuffleInPlace(Stone.values());
-        Physical[] floors = new Physical[stones.length];
+        floors = new Physical[stones.length];
         for (int i = 0; i < stones.length; i++) {
             floors[i] = DataPool.instance().getFloor(stones[i]);
+            DataPool.instance().getWall(stones[i]); // made here so levels built in parallel don't race to make it
         }
-        float diversity = stones.length * 0.04f + rng.nextFloat(stones.length * 0.16f), halfway = stones.length * 0.5f;
-        for (int z = 0; z < depth; z++) {
-            map = world[z];
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    map.contents[x][y] = new EpiTile(floors[Math.round(halfway + (diversity * noise.getConfiguredNoise(x, y, z + ridge.getConfiguredNoise(x, y, z) * 0.5f)))]);
-                }
-            }
+        if (decorator.flyweightTerrain) {
+            DataPool.instance().getTerrain(dataStarter.water);
+            DataPool.instance().getTerrain(dataStarter.shadedGrass);
         }
+        diversity = stones.length * 0.04f + rng.nextFloat(stones.length * 0.16f);
+        halfway = stones.length * 0.5f;
     }
 
 }
@@ -8,6 +8,7 @@ import squidpony.epigon.data.control.RecipeMixer;
 import squidpony.epigon.data.quality.Wood;
 import squidpony.squidgrid.gui.gdx.SColor;
 import squidpony.squidmath.Coord;
+import squidpony.squidmath.IRNG;
 import squidpony.squidmath.StatefulRNG;
 
 import java.util.ArrayList;
@@ -20,21 +21,34 @@ public class MapDecorator {
 
     public DataStarter dataStarter;
     public StatefulRNG srng;
+    /**
+     * When true, plain terrain like water and mud is shared between tiles instead of copied into each one.
+     */
+    public boolean flyweightTerrain = true;
+
     public MapDecorator(DataStarter handBuilt) {
         this.dataStarter = handBuilt;
         srng = new StatefulRNG(4000L);
     }
 
     public void placeDoor(EpiTile tile) {
+        placeDoor(tile, srng);
+    }
+
+    /**
+     * Places a door that is randomly open or shut, using the given IRNG so the result doesn't depend on what other maps
+     * were decorated first.
+     */
+    public void placeDoor(EpiTile tile, IRNG rng) {
         Physical adding = RecipeMixer.buildPhysical(tile.floor.terrainData.stone);
         List<Physical> adds = RecipeMixer.mix(dataStarter.doorRecipe, Maker.makeList(adding), new ArrayList<>(0));
         Physical door = adds.get(0);
-        dataStarter.setDoorOpen(door, srng.nextBoolean());
+        dataStarter.setDoorOpen(door, rng.nextBoolean());
         tile.add(door);
     }
 
     public void placeWater(EpiTile tile) {
-        tile.floor = RecipeMixer.buildPhysical(dataStarter.water);
+        tile.floor = buildTerrain(dataStarter.water);
     }
 
     public void placeLava(EpiTile tile) {
@@ -44,7 +58,15 @@ public class MapDecorator {
     }
 
     public void placeMud(EpiTile tile) {
-        tile.floor = RecipeMixer.buildPhysical(dataStarter.mud);
+        tile.floor = buildTerrain(dataStarter.mud);
+    }
+
+    /**
+     * Gets a floor made from the given blueprint, which is shared with other tiles if {@link #flyweightTerrain} is on.
+     * Anything that needs its own changeable floor, like lava with its individual light, should not use this.
+     */
+    public Physical buildTerrain(Physical blueprint) {
+        return flyweightTerrain ? DataPool.instance().getTerrain(blueprint) : RecipeMixer.buildPhysical(blueprint);
     }
 
     public void placeStairs(EpiMap top, EpiMap bottom, Coord c) {
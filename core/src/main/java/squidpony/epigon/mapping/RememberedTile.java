@@ -25,6 +25,16 @@ public class RememberedTile {
         remake(tile);
     }
 
+    /**
+     * Makes a memory with exactly the given appearance, such as one stored away with a level that was unloaded.
+     */
+    public RememberedTile(char symbol, float front, float back, float miniMapColor) {
+        this.symbol = symbol;
+        this.front = front;
+        this.back = back;
+        this.miniMapColor = miniMapColor;
+    }
+
     public void remake(EpiTile tile) {
         symbol = tile.getSymbolUninhabited();
         front = tile.getForegroundColor();
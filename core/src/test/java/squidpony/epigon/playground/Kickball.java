@@ -8,14 +8,44 @@ import squidpony.epigon.util.ConstantKey;
 import squidpony.epigon.util.Utilities;
 import squidpony.epigon.data.*;
 import squidpony.epigon.data.quality.*;
+import squidpony.epigon.combat.ActionOutcome;
+import squidpony.epigon.combat.CombatSimulator;
+import squidpony.epigon.data.raw.RawCreature;
+import squidpony.epigon.files.DebugConfig;
+import squidpony.epigon.files.FileManager;
+import squidpony.epigon.files.SaveGame;
+import squidpony.epigon.game.TurnEngine;
+import squidpony.epigon.game.TurnListener;
+import squidpony.epigon.mapping.EpiMap;
+import squidpony.epigon.mapping.EpiTile;
+import squidpony.epigon.mapping.LevelCache;
 import squidpony.epigon.mapping.MapDecorator;
 import squidpony.epigon.mapping.LocalAreaGenerator;
+import squidpony.epigon.mapping.RememberedTile;
 import squidpony.squidgrid.gui.gdx.SColor;
+import squidpony.squidgrid.Direction;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.squidmath.NumberTools;
 import squidpony.squidmath.OrderedSet;
+import squidpony.squidmath.StatefulRNG;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -33,7 +63,16 @@ public class Kickball {
 //        testFormulas();
 //        testJSON();
 //        printStones();
-        testWorldBuild();
+//        testWorldBuild();
+//        testTerrainMemory();
+//        testLazyWorld();
+//        testWorldDeterminism();
+//        testLevelCache();
+//        testSaveGame();
+//        testFileManager();
+//        testHeadlessTurns();
+//        testCombatSimulator();
+        testRandomContext();
     }
 
     private static class TimeTracker implements Comparable<TimeTracker> {
@@ -105,6 +144,453 @@ public class Kickball {
         System.out.println(csv);
     }
 
+    /**
+     * Builds the default-sized world once with every floor copied per tile and once with shared terrain flyweights,
+     * printing how many distinct floor objects each one holds and roughly how much heap each world keeps alive.
+     */
+    private void testTerrainMemory() {
+        System.out.println("Testing terrain memory.");
+
+        DataStarter hand = new DataStarter();
+        MapDecorator mapDecorator = new MapDecorator(hand);
+        LocalAreaGenerator gen = new LocalAreaGenerator(mapDecorator);
+        int width = 160, height = 160, depth = 10;
+
+        for (boolean flyweight : new boolean[]{false, true}) {
+            mapDecorator.flyweightTerrain = flyweight;
+            long before = usedMemory();
+            EpiMap[] world = gen.buildWorld(width, height, depth);
+            long after = usedMemory();
+
+            Set<Physical> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (EpiMap map : world) {
+                for (int x = 0; x < map.width; x++) {
+                    for (int y = 0; y < map.height; y++) {
+                        distinct.add(map.contents[x][y].floor);
+                    }
+                }
+            }
+            System.out.println((flyweight ? "Flyweight floors: " : "Copied floors:    ")
+                + distinct.size() + " distinct floors in " + world.length + " levels of " + width + " x " + height
+                + ", about " + ((after - before) >> 10) + " KiB of heap retained");
+        }
+    }
+
+    /**
+     * Compares how long a deep world takes before the first level can be played, built all at once and built lazily,
+     * then checks that lazily-built levels come out the same when visited in opposite orders.
+     */
+    private void testLazyWorld() {
+        System.out.println("Testing lazy world building.");
+
+        DataStarter hand = new DataStarter();
+        MapDecorator mapDecorator = new MapDecorator(hand);
+        int width = 160, height = 160, depth = 40;
+
+        long milli = System.currentTimeMillis();
+        new LocalAreaGenerator(mapDecorator).buildWorld(width, height, depth);
+        System.out.println("Eager world ready after " + (System.currentTimeMillis() - milli) + " ms");
+
+        // both lazy worlds use the same idHash blocks so what's made in them can be compared exactly
+        int ids = EpiData.reserveIdBlocks(depth, LocalAreaGenerator.idBlockSize(width, height));
+        milli = System.currentTimeMillis();
+        LocalAreaGenerator down = new LocalAreaGenerator(mapDecorator);
+        EpiMap[] downward = down.buildLazyWorld(width, height, depth, ids);
+        down.buildLevel(0);
+        System.out.println("Lazy world ready after " + (System.currentTimeMillis() - milli) + " ms");
+
+        LocalAreaGenerator up = new LocalAreaGenerator(mapDecorator);
+        EpiMap[] upward = up.buildLazyWorld(width, height, depth, ids);
+        for (int e = 9; e >= 0; e--) {
+            up.buildLevel(e);
+        }
+        for (int e = 1; e < 10; e++) {
+            down.buildLevel(e);
+        }
+        for (int e = 0; e < 10; e++) {
+            boolean same = Arrays.deepEquals(downward[e].simpleChars(), upward[e].simpleChars())
+                && downward[e].downStairPositions.equals(upward[e].downStairPositions)
+                && downward[e].upStairPositions.equals(upward[e].upStairPositions);
+            System.out.println("Level " + e + (same ? " matches" : " DIFFERS"));
+        }
+        for (int e = 0; e < 9; e++) {
+            System.out.println("Stairs from level " + e + " line up: "
+                + downward[e].downStairPositions.equals(downward[e + 1].upStairPositions));
+        }
+    }
+
+    /**
+     * Builds the same world on one thread, on several threads, and lazily from the bottom level up, then checks that
+     * every level is identical in all three, down to the names and colors of everything in every tile.
+     */
+    private void testWorldDeterminism() {
+        System.out.println("Testing world determinism.");
+
+        DataStarter hand = new DataStarter();
+        MapDecorator mapDecorator = new MapDecorator(hand);
+        int width = 120, height = 120, depth = 12, threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int ids = EpiData.reserveIdBlocks(depth, LocalAreaGenerator.idBlockSize(width, height));
+
+        long milli = System.currentTimeMillis();
+        EpiMap[] serial = new LocalAreaGenerator(mapDecorator).buildWorld(width, height, depth, new ForkJoinPool(1), ids);
+        System.out.println("1 thread took " + (System.currentTimeMillis() - milli) + " ms");
+
+        milli = System.currentTimeMillis();
+        EpiMap[] parallel = new LocalAreaGenerator(mapDecorator).buildWorld(width, height, depth, new ForkJoinPool(threads), ids);
+        System.out.println(threads + " threads took " + (System.currentTimeMillis() - milli) + " ms");
+
+        LocalAreaGenerator lazyGen = new LocalAreaGenerator(mapDecorator);
+        EpiMap[] lazy = lazyGen.buildLazyWorld(width, height, depth, ids);
+        for (int e = depth - 1; e >= 0; e--) {
+            lazyGen.buildLevel(e);
+        }
+
+        boolean allSame = true;
+        for (int e = 0; e < depth; e++) {
+            long s = fingerprint(serial[e]), p = fingerprint(parallel[e]), l = fingerprint(lazy[e]);
+            allSame &= s == p && s == l;
+            System.out.println("Level " + e + ": " + Long.toHexString(s) + (s == p ? " parallel matches" : " parallel DIFFERS")
+                + (s == l ? ", lazy matches" : ", lazy DIFFERS"));
+        }
+        System.out.println(allSame ? "World generation is deterministic." : "World generation is NOT deterministic!");
+    }
+
+    /**
+     * Changes a level and remembers part of it, walks away until it gets unloaded, then comes back and checks that the
+     * changes and the memory are all still there.
+     */
+    private void testLevelCache() {
+        System.out.println("Testing level unloading.");
+
+        DataStarter hand = new DataStarter();
+        MapDecorator mapDecorator = new MapDecorator(hand);
+        int width = 120, height = 120, depth = 8;
+        LocalAreaGenerator generator = new LocalAreaGenerator(mapDecorator);
+        EpiMap[] world = generator.buildLazyWorld(width, height, depth);
+        LevelCache levels = new LevelCache(generator, world, 0, 2);
+
+        EpiMap first = levels.visit(0);
+        int changed = 0;
+        for (int x = 0; x < width; x += 7) {
+            for (int y = 0; y < height; y += 5) {
+                if (first.contents[x][y].blockage == null) {
+                    first.add(x, y, Physical.makeBasic("pebble", '°', SColor.GRAY));
+                    changed++;
+                }
+                first.remembered[x][y] = new RememberedTile(first.contents[x][y]);
+                first.seen.insert(x, y);
+            }
+        }
+        long before = fingerprint(first);
+        int seen = first.seen.size();
+
+        for (int e = 1; e < depth; e++) {
+            levels.visit(e);
+        }
+        System.out.println("Level 0 unloaded: " + !levels.isResident(0) + ", after changing " + changed + " tiles");
+        first = null;
+
+        EpiMap back = levels.visit(0);
+        int remembered = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (back.remembered[x][y] != null) {
+                    remembered++;
+                }
+            }
+        }
+        System.out.println("Level 0 restored " + (fingerprint(back) == before ? "with every change" : "WITH CHANGES LOST")
+            + ", " + back.seen.size() + " of " + seen + " cells seen and " + remembered + " remembered");
+
+        LocalAreaGenerator keeping = new LocalAreaGenerator(mapDecorator);
+        LevelCache all = new LevelCache(keeping, keeping.buildLazyWorld(60, 60, depth), 0, LevelCache.ALL);
+        boolean kept = true;
+        for (int e = 0; e < depth; e++) {
+            all.visit(e);
+        }
+        for (int e = 0; e < depth; e++) {
+            kept &= all.isResident(e);
+        }
+        System.out.println("Keeping all levels " + (kept ? "kept every level" : "UNLOADED SOME"));
+    }
+
+    /**
+     * Saves a whole world with a player and a conditioned creature in it, loads it back, and checks that every tile holds
+     * the same things and the creature comes back with the same belongings, conditions and random state.
+     */
+    private void testSaveGame() {
+        System.out.println("Testing saving and loading.");
+
+        DataStarter hand = DataPool.instance().dataStarter;
+        MapDecorator mapDecorator = new MapDecorator(hand);
+        int width = 160, height = 160, depth = 17;
+        EpiMap[] world = new LocalAreaGenerator(mapDecorator).buildWorld(width, height, depth);
+        Physical player = RecipeMixer.buildPhysical(hand.playerBlueprint);
+        player.location = Coord.get(width >>> 1, height >>> 1);
+        Physical creature = RecipeMixer.buildCreature(RawCreature.ENTRIES[0]);
+        creature.location = Coord.get(1, 1);
+        new Condition(ConditionBlueprint.CONDITIONS.getAt(0), creature);
+        creature.nextLong();
+        world[0].contents[1][1].blockage = creature;
+
+        long milli = System.currentTimeMillis();
+        byte[] bytes = SaveGame.write(depth, e -> world[e], 0, 3, player);
+        System.out.println("Saved " + depth + " levels in " + bytes.length + " bytes after " + (System.currentTimeMillis() - milli) + " ms");
+
+        SaveGame save;
+        milli = System.currentTimeMillis();
+        try {
+            save = SaveGame.read(bytes, RecipeMixer::buildCreature);
+        } catch (IOException ex) {
+            System.out.println("Could not load: " + ex);
+            return;
+        }
+        System.out.println("Loaded after " + (System.currentTimeMillis() - milli) + " ms");
+
+        int different = 0;
+        for (int e = 0; e < depth; e++) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (!describe(world[e].contents[x][y]).equals(describe(save.world[e].contents[x][y]))) {
+                        different++;
+                    }
+                }
+            }
+        }
+        System.out.println(different == 0 ? "Every tile matches." : different + " tiles DIFFER");
+        System.out.println("Player inventory: " + player.inventory.size() + " saved, " + save.player.inventory.size() + " loaded");
+        Physical loaded = save.world[0].creatures.get(creature.location);
+        boolean same = loaded != null && loaded.getState() == creature.getState()
+            && loaded.conditions.size() == creature.conditions.size()
+            && loaded.statEffects.size() == creature.statEffects.size()
+            && loaded.physicalDrops.size() == creature.physicalDrops.size()
+            && loaded.creatureData.equippedDistinct.size() == creature.creatureData.equippedDistinct.size()
+            && loaded.heldStat(CalcStat.PRECISION, null) == creature.heldStat(CalcStat.PRECISION, null);
+        System.out.println(same ? "Creature came back the same." : "Creature DIFFERS");
+    }
+
+    /**
+     * Runs many turns on a level full of creatures with no display at all, with the player wandering at random, to see
+     * how many turns a second the game logic can manage.
+     */
+    private void testHeadlessTurns() {
+        System.out.println("Testing headless turns.");
+
+        DataStarter hand = DataPool.instance().dataStarter;
+        EpiMap map = new LocalAreaGenerator(new MapDecorator(hand)).buildWorld(160, 160, 1)[0];
+        StatefulRNG rng = new StatefulRNG(12345L);
+        GreasedRegion floors = new GreasedRegion(map.simpleChars(), '.');
+        for (Coord c : floors.copy().randomScatter(rng, 12)) {
+            if (map.contents[c.x][c.y].blockage == null && map.contents[c.x][c.y].floor != null) {
+                Physical p = RecipeMixer.buildCreature(RawCreature.ENTRIES[rng.nextInt(RawCreature.ENTRIES.length)]);
+                p.location = c;
+                map.add(c.x, c.y, p);
+                map.creatures.put(c, p);
+            }
+        }
+        int[] deaths = new int[1];
+        TurnEngine engine = new TurnEngine(rng, new DebugConfig(), 102, 26, new TurnListener() {
+            @Override
+            public void killed(Physical target, ActionOutcome outcome) {
+                deaths[0]++;
+            }
+        });
+        Physical player = RecipeMixer.buildPhysical(hand.playerBlueprint);
+        Coord start = floors.singleRandom(rng);
+        while (map.contents[start.x][start.y].blockage != null) {
+            start = floors.singleRandom(rng);
+        }
+        player.location = start;
+        map.add(start.x, start.y, player);
+        engine.player = player;
+        engine.enterLevel(map);
+        System.out.println(map.creatures.size() + " creatures on the level.");
+
+        int turns = 10000;
+        long milli = System.currentTimeMillis();
+        for (int i = 0; i < turns; i++) {
+            player.stats.get(Stat.VIGOR).set(42.0); // the player can't die here, or the test would end early
+            engine.move(rng.getRandomElement(Direction.OUTWARDS));
+        }
+        long time = System.currentTimeMillis() - milli;
+        System.out.println(turns + " turns took " + time + " ms, " + (turns * 1000L / Math.max(1L, time)) + " turns per second, and "
+            + deaths[0] + " creatures died; " + map.creatures.size() + " are left.");
+    }
+
+    /**
+     * Checks that a RandomContext replays the same numbers from the same state and leaves each Physical's own state alone.
+     */
+    private void testRandomContext() {
+        System.out.println("Testing random contexts.");
+        Physical a = new Physical(), b = new Physical();
+        long stateA = a.getState(), stateB = b.getState();
+        RandomContext context = new RandomContext(42L).split(7);
+        long start = context.getState();
+        long[] first = new long[8], second = new long[8];
+        EpiData.useRandomContext(context);
+        for (int i = 0; i < 8; i += 2) {
+            first[i] = a.nextLong();
+            first[i + 1] = b.between(0, 1000);
+        }
+        context.setState(start);
+        for (int i = 0; i < 8; i += 2) {
+            second[i] = a.nextLong();
+            second[i + 1] = b.between(0, 1000);
+        }
+        EpiData.useOwnRandomness();
+        System.out.println("Replay " + (Arrays.equals(first, second) ? "matched" : "DID NOT MATCH") + "; own states "
+            + (a.getState() == stateA && b.getState() == stateB ? "were untouched." : "CHANGED."));
+        System.out.println("Split contexts " + (new RandomContext(42L).split(7).getSeed() == context.getSeed() ? "agree." : "DISAGREE."));
+    }
+
+    /**
+     * Pits every creature against every other with every weapon, on every core and then on one thread to compare speed,
+     * and writes the rates to a CSV file.
+     */
+    private void testCombatSimulator() {
+        System.out.println("Testing the combat simulator.");
+        DataPool.instance();
+        int attacks = 200;
+        long milli = System.currentTimeMillis();
+        CombatSimulator parallel = new CombatSimulator(attacks).run(12345L);
+        long time = System.currentTimeMillis() - milli;
+        int rows = parallel.hits.length;
+        System.out.println(rows * (long) attacks + " attacks took " + time + " ms on " + ForkJoinPool.commonPool().getParallelism() + " threads.");
+
+        milli = System.currentTimeMillis();
+        CombatSimulator serial = new CombatSimulator(attacks).run(new ForkJoinPool(1), 12345L);
+        time = System.currentTimeMillis() - milli;
+        System.out.println("The same attacks took " + time + " ms on 1 thread.");
+
+        long hits = 0, kills = 0;
+        for (int r = 0; r < rows; r++) {
+            hits += parallel.hits[r];
+            kills += parallel.kills[r];
+        }
+        System.out.println(hits + " hits and " + kills + " kills out of " + rows * (long) attacks + " attacks.");
+        // creature idHashes differ between the two runs, so only the overall rates can be compared
+        long serialHits = 0;
+        for (int r = 0; r < rows; r++) {
+            serialHits += serial.hits[r];
+        }
+        System.out.println("Hit rate was " + hits / (double) (rows * (long) attacks) + " in parallel and "
+            + serialHits / (double) (rows * (long) attacks) + " on 1 thread.");
+
+        try (Writer out = new BufferedWriter(new FileWriter("Battle Test Output.csv"))) {
+            parallel.writeCSV(out);
+            System.out.println("Wrote " + rows + " rows to Battle Test Output.csv");
+        } catch (IOException e) {
+            System.out.println("Couldn't write the CSV: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a large file through each of FileManager's ways of writing, reads it back through each way of reading, and
+     * checks that nothing was lost and that no temporary files were left behind.
+     */
+    private void testFileManager() {
+        System.out.println("Testing file reading and writing.");
+
+        FileManager files = FileManager.instance();
+        String path = "Save/test";
+        byte[] data = new byte[1 << 24];
+        new Random(123L).nextBytes(data);
+
+        try {
+            long milli = System.currentTimeMillis();
+            files.writeBytes("bytes.bin", path, data);
+            System.out.println("Wrote bytes after " + (System.currentTimeMillis() - milli) + " ms");
+            milli = System.currentTimeMillis();
+            files.writeStream("stream.bin", path, out -> out.write(data));
+            System.out.println("Wrote stream after " + (System.currentTimeMillis() - milli) + " ms");
+
+            milli = System.currentTimeMillis();
+            boolean same = Arrays.equals(data, files.readBytes("stream.bin", path));
+            System.out.println("Read bytes (" + same + ") after " + (System.currentTimeMillis() - milli) + " ms");
+            milli = System.currentTimeMillis();
+            same = files.mapFile("bytes.bin", path).equals(ByteBuffer.wrap(data));
+            System.out.println("Read mapped (" + same + ") after " + (System.currentTimeMillis() - milli) + " ms");
+            milli = System.currentTimeMillis();
+            try (InputStream in = files.openFile("stream.bin", path)) {
+                byte[] read = new byte[data.length];
+                int n = 0;
+                for (int r; n < read.length && (r = in.read(read, n, read.length - n)) >= 0; n += r) {
+                }
+                same = n == data.length && in.read() < 0 && Arrays.equals(data, read);
+            }
+            System.out.println("Read stream (" + same + ") after " + (System.currentTimeMillis() - milli) + " ms");
+
+            files.writeBuffers("text.txt", path, ByteBuffer.wrap("one\r\ntwo\rthree\n\n".getBytes(StandardCharsets.UTF_8)));
+            System.out.println("Text read back " + (files.readFile("text.txt", path).equals("one\ntwo\nthree\n") ? "correctly" : "WRONG"));
+            files.writeFile("text.txt", path, "four");
+            System.out.println("Text replaced " + (files.readFile("text.txt", path).equals("four") ? "correctly" : "WRONG"));
+
+            try {
+                files.writeStream("text.txt", path, out -> {
+                    out.write(data);
+                    throw new IllegalStateException("failed partway");
+                });
+                System.out.println("Failed write WRONGLY went through");
+            } catch (IllegalStateException ex) {
+                System.out.println("Failed write kept the old text " + (files.readFile("text.txt", path).equals("four") ? "correctly" : "WRONG"));
+            }
+
+            String[] left = new File(path).list();
+            System.out.println("Files left: " + (left == null ? "none" : String.join(", ", left)));
+            for (String name : new String[]{"bytes.bin", "stream.bin", "text.txt"}) {
+                files.deleteFile(name, path);
+            }
+        } catch (IOException ex) {
+            System.out.println("File test FAILED: " + ex);
+        }
+    }
+
+    private static String describe(EpiTile tile) {
+        StringBuilder sb = new StringBuilder().append(tile.getSymbol());
+        if (tile.floor != null) {
+            sb.append(tile.floor.name).append(tile.floor.color);
+        }
+        if (tile.blockage != null) {
+            sb.append(tile.blockage.name).append(tile.blockage.color);
+        }
+        for (Physical p : tile.contents) {
+            sb.append(p.name).append(p.color).append(p.inventory.size());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Hashes everything visible about a level: each tile's symbol, colors and contents (with their names, ids and any
+     * inventory), plus where the stairs are.
+     */
+    private static long fingerprint(EpiMap map) {
+        long h = map.downStairPositions.hash64() ^ map.upStairPositions.hash64() * 31L;
+        for (int x = 0; x < map.width; x++) {
+            for (int y = 0; y < map.height; y++) {
+                EpiTile tile = map.contents[x][y];
+                h = (h ^ tile.getSymbol()) * 0x9E3779B97F4A7C15L;
+                h = (h ^ NumberTools.floatToIntBits(tile.getForegroundColor())) * 0x9E3779B97F4A7C15L;
+                h = (h ^ NumberTools.floatToIntBits(tile.getBackgroundColor(x, y, 0L))) * 0x9E3779B97F4A7C15L;
+                if (tile.blockage != null) {
+                    h = (h ^ tile.blockage.name.hashCode() ^ (long) tile.blockage.hashCode() << 32) * 0x9E3779B97F4A7C15L;
+                }
+                for (Physical p : tile.contents) {
+                    h = (h ^ p.name.hashCode() ^ (long) p.hashCode() << 32) * 0x9E3779B97F4A7C15L;
+                    h = (h ^ p.inventory.size()) * 0x9E3779B97F4A7C15L;
+                }
+            }
+        }
+        return h ^ h >>> 29;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private void testImmutableKeys() {
         OrderedSet<Material> materials = new OrderedSet<>(ConstantKey.ConstantKeyHasher.instance);
         materials.addAll(Cloth.values());